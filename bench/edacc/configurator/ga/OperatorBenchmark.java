@@ -0,0 +1,207 @@
+package edacc.configurator.ga;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import edacc.api.APIImpl;
+import edacc.configurator.ga.backend.LocalExperimentResult;
+import edacc.configurator.ga.backend.SimulatedBackend;
+import edacc.model.StatusCode;
+import edacc.parameterspace.ParameterConfiguration;
+import edacc.parameterspace.graph.ParameterGraph;
+import edacc.util.MersenneTwister;
+
+/**
+ * Micro benchmarks of the in-process hot paths of the GA: tournament selection,
+ * crossover, mutation, neighbourhood generation, copying individuals and population
+ * initialization. No database is needed, the parameter graphs are generated
+ * (see SyntheticParameterGraph) or loaded from a file.
+ *
+ * Each benchmark is run for a number of warmup iterations and then measured for a number
+ * of iterations of fixed duration. The mean and standard deviation of the time per
+ * operation over the measured iterations are reported.
+ *
+ * Usage: java edacc.configurator.ga.OperatorBenchmark [options]
+ *   -graphs 10,100,500         number of parameters of the generated graphs
+ *   -graphFile file.xml        use the parameter graph of the file instead
+ *   -populations 40,1000,5000  population sizes
+ *   -warmup 3                  number of warmup iterations
+ *   -iterations 5              number of measured iterations
+ *   -time 1000                 duration of each iteration in milliseconds
+ */
+public class OperatorBenchmark {
+    /** results of the operations are folded into this field so they can't be optimized away */
+    public static volatile int sink;
+
+    private int warmupIterations = 3;
+    private int iterations = 5;
+    private long iterationMillis = 1000;
+
+    /**
+     * A benchmarked operation. setup() is called before each iteration and isn't measured.
+     */
+    private static abstract class Operation {
+        void setup() {
+        }
+
+        abstract Object run();
+    }
+
+    public static void main(String... args) throws Exception {
+        OperatorBenchmark bench = new OperatorBenchmark();
+        int[] graphSizes = {10, 100, 500};
+        int[] populationSizes = {40, 1000, 5000};
+        String graphFile = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if ("-graphs".equals(args[i])) graphSizes = parseInts(args[i + 1]);
+            else if ("-graphFile".equals(args[i])) graphFile = args[i + 1];
+            else if ("-populations".equals(args[i])) populationSizes = parseInts(args[i + 1]);
+            else if ("-warmup".equals(args[i])) bench.warmupIterations = Integer.valueOf(args[i + 1]);
+            else if ("-iterations".equals(args[i])) bench.iterations = Integer.valueOf(args[i + 1]);
+            else if ("-time".equals(args[i])) bench.iterationMillis = Long.valueOf(args[i + 1]);
+            else throw new IllegalArgumentException("Unknown option " + args[i]);
+        }
+
+        System.out.println(String.format("%-24s %8s %10s %14s %12s", "benchmark", "params", "population", "ns/op", "error"));
+        if (graphFile != null) {
+            bench.runAll(new APIImpl().loadParameterGraphFromFile(graphFile), populationSizes);
+        } else {
+            for (int numParameters: graphSizes) {
+                bench.runAll(SyntheticParameterGraph.create(numParameters), populationSizes);
+            }
+        }
+    }
+
+    private static int[] parseInts(String list) {
+        String[] values = list.split(",");
+        int[] ints = new int[values.length];
+        for (int i = 0; i < values.length; i++) ints[i] = Integer.valueOf(values[i].trim());
+        return ints;
+    }
+
+    private void runAll(final ParameterGraph pspace, int[] populationSizes) throws Exception {
+        final Random rng = new MersenneTwister(123456789);
+        final int numParameters = pspace.getParameterSet().size();
+        final ParameterConfiguration p1 = pspace.getRandomConfiguration(rng);
+        final ParameterConfiguration p2 = pspace.getRandomConfiguration(rng);
+        final List<ParameterConfiguration> configs = new ArrayList<ParameterConfiguration>();
+
+        measure("crossover", numParameters, 0, new Operation() {
+            Object run() {
+                return pspace.crossover(p1, p2, rng);
+            }
+        });
+        measure("crossover2Point", numParameters, 0, new Operation() {
+            Object run() {
+                return pspace.crossover2Point(p1, p2, rng);
+            }
+        });
+        measure("mutate", numParameters, 0, new Operation() {
+            int ix = 0;
+
+            void setup() {
+                // mutate fresh copies, repeated mutation would drift to the domain bounds
+                configs.clear();
+                for (int i = 0; i < 1000; i++) configs.add(new ParameterConfiguration(p1));
+            }
+
+            Object run() {
+                ParameterConfiguration config = configs.get(ix++ % configs.size());
+                pspace.mutateParameterConfiguration(rng, config, 0.1f, 0.1f);
+                return config;
+            }
+        });
+        measure("getNeighbourhood", numParameters, 0, new Operation() {
+            Object run() {
+                return pspace.getNeighbourhood(p1);
+            }
+        });
+        final Individual individual = new Individual(p1);
+        individual.setCost(1.0f);
+        measure("copyIndividual", numParameters, 0, new Operation() {
+            Object run() {
+                return new Individual(individual);
+            }
+        });
+
+        for (final int populationSize: populationSizes) {
+            final GAConfigurator ga = new GAConfigurator(new SyntheticBackend(pspace), 0, populationSize,
+                    3, 0.8f, 0.1f, 0.1f, 3, 1, 10, 123456789, false, false);
+            final List<Individual> population = ga.initializePopulation(populationSize);
+            for (Individual ind: population) ind.setCost(rng.nextFloat());
+            measure("tournamentSelect", numParameters, populationSize, new Operation() {
+                Object run() {
+                    return ga.tournamentSelect(population);
+                }
+            });
+            measure("initializePopulation", numParameters, populationSize, new Operation() {
+                Object run() {
+                    try {
+                        return ga.initializePopulation(populationSize);
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+            ga.shutdown();
+        }
+    }
+
+    private void measure(String name, int numParameters, int populationSize, Operation op) {
+        double[] nsPerOp = new double[iterations];
+        for (int i = 0; i < warmupIterations + iterations; i++) {
+            op.setup();
+            long ops = 0;
+            long start = System.nanoTime();
+            long end = start + iterationMillis * 1000000L;
+            long now;
+            do {
+                sink += op.run().hashCode();
+                ops++;
+            } while ((now = System.nanoTime()) < end);
+            if (i >= warmupIterations) nsPerOp[i - warmupIterations] = (double) (now - start) / ops;
+        }
+        double mean = 0;
+        for (double x: nsPerOp) mean += x;
+        mean /= iterations;
+        double variance = 0;
+        for (double x: nsPerOp) variance += (x - mean) * (x - mean);
+        double stddev = iterations > 1 ? Math.sqrt(variance / (iterations - 1)) : 0;
+        System.out.println(String.format("%-24s %8d %10s %14.1f %12.1f", name, numParameters,
+                populationSize == 0 ? "-" : String.valueOf(populationSize), mean, stddev));
+    }
+
+    /**
+     * In-memory backend of the generated parameter graph. The benchmarks don't launch
+     * jobs, a launched job would solve its instance in one second.
+     */
+    private static class SyntheticBackend extends SimulatedBackend {
+        private final ParameterGraph pspace;
+
+        SyntheticBackend(ParameterGraph pspace) {
+            super(1, Clock.SYSTEM);
+            this.pspace = pspace;
+        }
+
+        @Override
+        public ParameterGraph loadParameterGraph(int idExperiment) {
+            return pspace;
+        }
+
+        @Override
+        public int getCourseLength(int idExperiment) {
+            return 1;
+        }
+
+        @Override
+        protected int[] getCourseEntry(int index) {
+            return new int[] {1, 0};
+        }
+
+        @Override
+        protected Run run(int idSolverConfig, ParameterConfiguration config, int instance, int seed) {
+            return new Run(StatusCode.SUCCESSFUL, LocalExperimentResult.SAT, 1.0f);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package edacc.configurator.ga;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import edacc.parameterspace.Parameter;
+import edacc.parameterspace.domain.CategoricalDomain;
+import edacc.parameterspace.domain.Domain;
+import edacc.parameterspace.domain.FlagDomain;
+import edacc.parameterspace.domain.IntegerDomain;
+import edacc.parameterspace.domain.RealDomain;
+import edacc.parameterspace.graph.AndNode;
+import edacc.parameterspace.graph.Edge;
+import edacc.parameterspace.graph.Node;
+import edacc.parameterspace.graph.OrNode;
+import edacc.parameterspace.graph.ParameterGraph;
+
+/**
+ * Generates parameter graphs of a given size for the benchmarks.
+ *
+ * The parameters cycle through integer, real, flag and categorical domains.
+ * Every tenth parameter is a categorical switch with the values "on" and "off";
+ * the following parameters up to the next switch are only active if the switch is "on".
+ */
+public class SyntheticParameterGraph {
+    private SyntheticParameterGraph() {
+    }
+
+    public static ParameterGraph create(int numParameters) {
+        AndNode start = new AndNode(null, null);
+        Set<Node> nodes = new HashSet<Node>();
+        List<Edge> edges = new ArrayList<Edge>();
+        Set<Parameter> parameters = new HashSet<Parameter>();
+        nodes.add(start);
+
+        AndNode parent = start;
+        for (int i = 0; i < numParameters; i++) {
+            if (i % 10 == 0) {
+                Parameter p = new Parameter(String.format("switch%04d", i), new CategoricalDomain(new String[] {"on", "off"}));
+                OrNode or = new OrNode(p);
+                AndNode on = new AndNode(p, new CategoricalDomain(new String[] {"on"}));
+                AndNode off = new AndNode(p, new CategoricalDomain(new String[] {"off"}));
+                parameters.add(p);
+                nodes.add(or);
+                nodes.add(on);
+                nodes.add(off);
+                edges.add(new Edge(start, or, 0));
+                edges.add(new Edge(or, on, 0));
+                edges.add(new Edge(or, off, 0));
+                parent = on;
+                continue;
+            }
+            Domain domain;
+            switch (i % 4) {
+            case 0: domain = new IntegerDomain(0, 1000); break;
+            case 1: domain = new RealDomain(0.0, 1.0); break;
+            case 2: domain = new FlagDomain(true, true); break;
+            default: domain = new CategoricalDomain(new String[] {"a", "b", "c", "d"});
+            }
+            Parameter p = new Parameter(String.format("p%04d", i), domain);
+            OrNode or = new OrNode(p);
+            AndNode and = new AndNode(p, domain);
+            parameters.add(p);
+            nodes.add(or);
+            nodes.add(and);
+            edges.add(new Edge(parent, or, 0));
+            edges.add(new Edge(or, and, 0));
+        }
+        return new ParameterGraph(nodes, edges, parameters, start);
+    }
+}
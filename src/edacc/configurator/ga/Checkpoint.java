@@ -0,0 +1,279 @@
+package edacc.configurator.ga;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import edacc.parameterspace.graph.ParameterGraph;
+import edacc.util.MersenneTwister;
+
+/**
+ * Search state of a tuning session: the population, the global best individual,
+ * the generation counter, the termination criterion state, the state of the random
+ * number generator and the IDs of the jobs of all individuals that are still being
+ * evaluated. A resumed session re-attaches to these jobs instead of launching them again.
+ * The IDs of the jobs the session killed are kept as well: killed runs are partial, but the
+ * backend doesn't necessarily mark them, e.g. the runs of individuals eliminated by racing.
+ *
+ * Checkpoints are written to a compact binary file. The file is written to a temporary
+ * file first and then renamed, so a crash while writing leaves the previous checkpoint intact.
+ */
+public class Checkpoint {
+    private static final int FILE_VERSION = 2;
+
+    private final int idExperiment;
+    private final boolean steadyState;
+    private final boolean evaluated;
+    private final int generation;
+    private final int terminationCriterionHits;
+    private final Float generationAverage;
+    private final int finishedOffspring;
+    private final Individual globalBest;
+    private final List<Individual> population;
+    private final Map<Individual, List<Integer>> running;
+    private final Collection<Integer> killed;
+    private final byte[] rngState;
+
+    /**
+     * @param idExperiment
+     * @param steadyState true if the session runs evolveSteadyState()
+     * @param evaluated false if the population of the current generation is still being evaluated
+     * @param generation
+     * @param terminationCriterionHits
+     * @param generationAverage can be null
+     * @param finishedOffspring number of finished offspring of the current generation (steady-state mode)
+     * @param globalBest can be null
+     * @param population
+     * @param running individuals that are being evaluated and the IDs of their jobs. In steady-state
+     * mode these can be offspring that are not part of the population.
+     * @param killed IDs of the jobs that were killed in the session
+     * @param rngState state of the random number generator, see MersenneTwister.writeState()
+     */
+    public Checkpoint(int idExperiment, boolean steadyState, boolean evaluated, int generation,
+            int terminationCriterionHits, Float generationAverage, int finishedOffspring,
+            Individual globalBest, List<Individual> population, Map<Individual, List<Integer>> running,
+            Collection<Integer> killed, byte[] rngState) {
+        this.idExperiment = idExperiment;
+        this.steadyState = steadyState;
+        this.evaluated = evaluated;
+        this.generation = generation;
+        this.terminationCriterionHits = terminationCriterionHits;
+        this.generationAverage = generationAverage;
+        this.finishedOffspring = finishedOffspring;
+        this.globalBest = globalBest;
+        this.population = population;
+        this.running = running;
+        this.killed = killed;
+        this.rngState = rngState;
+    }
+
+    public final int getIdExperiment() {
+        return idExperiment;
+    }
+
+    public final boolean isSteadyState() {
+        return steadyState;
+    }
+
+    public final boolean isEvaluated() {
+        return evaluated;
+    }
+
+    public final int getGeneration() {
+        return generation;
+    }
+
+    public final int getTerminationCriterionHits() {
+        return terminationCriterionHits;
+    }
+
+    public final Float getGenerationAverage() {
+        return generationAverage;
+    }
+
+    public final int getFinishedOffspring() {
+        return finishedOffspring;
+    }
+
+    public final Individual getGlobalBest() {
+        return globalBest;
+    }
+
+    public final List<Individual> getPopulation() {
+        return population;
+    }
+
+    public final Map<Individual, List<Integer>> getRunning() {
+        return running;
+    }
+
+    public final Collection<Integer> getKilled() {
+        return killed;
+    }
+
+    public final byte[] getRngState() {
+        return rngState;
+    }
+
+    /**
+     * Restores the state of the given random number generator.
+     */
+    public void restoreRng(MersenneTwister rng) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(rngState));
+        rng.readState(in);
+        in.close();
+    }
+
+    public static byte[] rngState(MersenneTwister rng) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        rng.writeState(out);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    public void save(File file) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+        try {
+            out.writeInt(FILE_VERSION);
+            out.writeInt(idExperiment);
+            out.writeBoolean(steadyState);
+            out.writeBoolean(evaluated);
+            out.writeInt(generation);
+            out.writeInt(terminationCriterionHits);
+            out.writeBoolean(generationAverage != null);
+            if (generationAverage != null) out.writeFloat(generationAverage);
+            out.writeInt(finishedOffspring);
+            out.writeBoolean(globalBest != null);
+            if (globalBest != null) writeIndividual(out, globalBest);
+
+            // population members with their jobs, then the running offspring
+            Map<Individual, Boolean> members = new IdentityHashMap<Individual, Boolean>();
+            out.writeInt(population.size());
+            for (Individual ind: population) {
+                members.put(ind, true);
+                writeIndividual(out, ind);
+                writeJobs(out, running.get(ind));
+            }
+            List<Individual> offspring = new ArrayList<Individual>();
+            for (Individual ind: running.keySet()) {
+                if (!members.containsKey(ind)) offspring.add(ind);
+            }
+            out.writeInt(offspring.size());
+            for (Individual ind: offspring) {
+                writeIndividual(out, ind);
+                writeJobs(out, running.get(ind));
+            }
+            out.writeInt(killed.size());
+            for (int idJob: killed) out.writeInt(idJob);
+
+            out.writeInt(rngState.length);
+            out.write(rngState);
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(file)) {
+            // renameTo doesn't replace existing files on all platforms
+            file.delete();
+            if (!tmp.renameTo(file)) throw new IOException("Couldn't write checkpoint file " + file);
+        }
+    }
+
+    /**
+     * Loads the checkpoint of the given file.
+     * @return null if the file doesn't exist
+     * @throws IOException if the file is of another version or experiment
+     */
+    public static Checkpoint load(File file, ParameterGraph pspace, int idExperiment) throws Exception {
+        if (!file.exists()) return null;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != FILE_VERSION) throw new IOException("Unknown checkpoint file version in " + file);
+            if (in.readInt() != idExperiment) throw new IOException("Checkpoint " + file + " belongs to another experiment");
+            boolean steadyState = in.readBoolean();
+            boolean evaluated = in.readBoolean();
+            int generation = in.readInt();
+            int terminationCriterionHits = in.readInt();
+            Float generationAverage = in.readBoolean() ? in.readFloat() : null;
+            int finishedOffspring = in.readInt();
+            Individual globalBest = in.readBoolean() ? readIndividual(in, pspace) : null;
+
+            List<Individual> population = new ArrayList<Individual>();
+            Map<Individual, List<Integer>> running = new LinkedHashMap<Individual, List<Integer>>();
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                Individual ind = readIndividual(in, pspace);
+                population.add(ind);
+                List<Integer> jobs = readJobs(in);
+                if (jobs != null) running.put(ind, jobs);
+            }
+            size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                Individual ind = readIndividual(in, pspace);
+                running.put(ind, readJobs(in));
+            }
+            size = in.readInt();
+            List<Integer> killed = new ArrayList<Integer>(size);
+            for (int i = 0; i < size; i++) killed.add(in.readInt());
+
+            byte[] rngState = new byte[in.readInt()];
+            in.readFully(rngState);
+            return new Checkpoint(idExperiment, steadyState, evaluated, generation, terminationCriterionHits,
+                    generationAverage, finishedOffspring, globalBest, population, running, killed, rngState);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void writeIndividual(DataOutputStream out, Individual ind) throws IOException {
+        out.writeInt(ind.getIdSolverConfiguration());
+        out.writeBoolean(ind.getName() != null);
+        if (ind.getName() != null) out.writeUTF(ind.getName());
+        out.writeBoolean(ind.getCost() != null);
+        if (ind.getCost() != null) out.writeFloat(ind.getCost());
+        out.writeBoolean(ind.isCensored());
+        out.writeUTF(ConfigurationCodec.encode(ind.getConfig()));
+    }
+
+    private static Individual readIndividual(DataInputStream in, ParameterGraph pspace) throws Exception {
+        int idSolverConfiguration = in.readInt();
+        String name = in.readBoolean() ? in.readUTF() : null;
+        Float cost = in.readBoolean() ? in.readFloat() : null;
+        boolean censored = in.readBoolean();
+        Individual ind = new Individual(ConfigurationCodec.decode(pspace, in.readUTF()));
+        ind.setIdSolverConfiguration(idSolverConfiguration);
+        ind.setName(name);
+        ind.setCost(cost);
+        ind.setCensored(censored);
+        return ind;
+    }
+
+    private static void writeJobs(DataOutputStream out, List<Integer> jobs) throws IOException {
+        out.writeBoolean(jobs != null);
+        if (jobs == null) return;
+        out.writeInt(jobs.size());
+        for (int idJob: jobs) out.writeInt(idJob);
+    }
+
+    private static List<Integer> readJobs(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) return null;
+        int size = in.readInt();
+        List<Integer> jobs = new ArrayList<Integer>(size);
+        for (int i = 0; i < size; i++) jobs.add(in.readInt());
+        return jobs;
+    }
+}
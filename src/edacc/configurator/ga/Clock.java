@@ -0,0 +1,16 @@
+package edacc.configurator.ga;
+
+/**
+ * Wall-clock time of a tuning session: the system time, or a simulated time
+ * (see SimulatedClock) when recorded runs are replayed.
+ */
+public class Clock {
+    public static final Clock SYSTEM = new Clock();
+
+    protected Clock() {
+    }
+
+    public long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+}
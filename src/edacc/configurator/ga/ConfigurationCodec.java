@@ -0,0 +1,95 @@
+package edacc.configurator.ga;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import edacc.parameterspace.Parameter;
+import edacc.parameterspace.ParameterConfiguration;
+import edacc.parameterspace.graph.ParameterGraph;
+
+/**
+ * Converts parameter configurations to single line strings and back, so they can be
+ * stored in local files. The string is a list of name=value pairs separated by '&'
+ * in the order of the parameter names. Values carry a type tag (Integer, Long, Double,
+ * Float, Boolean, String or an enum constant) and are URL encoded.
+ */
+public class ConfigurationCodec {
+    private ConfigurationCodec() {
+    }
+
+    public static String encode(ParameterConfiguration config) {
+        List<Parameter> params = new ArrayList<Parameter>(config.getParameter_instances().keySet());
+        Collections.sort(params);
+        StringBuilder sb = new StringBuilder();
+        for (Parameter p: params) {
+            Object value = config.getParameterValue(p);
+            if (value == null) continue;
+            if (sb.length() > 0) sb.append('&');
+            sb.append(urlEncode(p.getName())).append('=').append(urlEncode(encodeValue(value)));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Creates the parameter configuration of the given parameter graph that
+     * has the values of the encoded configuration.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public static ParameterConfiguration decode(ParameterGraph pspace, String encoded) throws Exception {
+        ParameterConfiguration config = new ParameterConfiguration(pspace.getParameterSet());
+        Map<String, Parameter> params = pspace.getParameterMap();
+        if (encoded.length() > 0) {
+            for (String pair: encoded.split("&")) {
+                int ix = pair.indexOf('=');
+                String name = URLDecoder.decode(pair.substring(0, ix), "UTF-8");
+                String value = URLDecoder.decode(pair.substring(ix + 1), "UTF-8");
+                Parameter p = params.get(name);
+                if (p == null) throw new IllegalArgumentException("Unknown parameter " + name);
+                char type = value.charAt(0);
+                String v = value.substring(2);
+                Object decoded;
+                if (type == 'i') decoded = Integer.valueOf(v);
+                else if (type == 'l') decoded = Long.valueOf(v);
+                else if (type == 'd') decoded = Double.valueOf(v);
+                else if (type == 'f') decoded = Float.valueOf(v);
+                else if (type == 'b') decoded = Boolean.valueOf(v);
+                else if (type == 's') decoded = v;
+                else if (type == 'e') {
+                    int sep = v.lastIndexOf(':');
+                    Class enumClass = Class.forName(v.substring(0, sep));
+                    decoded = Enum.valueOf(enumClass, v.substring(sep + 1));
+                }
+                else throw new IllegalArgumentException("Unknown value type " + type);
+                config.setParameterValue(p, decoded);
+            }
+        }
+        config.updateChecksum();
+        return config;
+    }
+
+    private static String encodeValue(Object value) {
+        if (value instanceof Integer) return "i:" + value;
+        if (value instanceof Long) return "l:" + value;
+        if (value instanceof Double) return "d:" + value;
+        if (value instanceof Float) return "f:" + value;
+        if (value instanceof Boolean) return "b:" + value;
+        if (value instanceof Enum) {
+            Enum<?> e = (Enum<?>) value;
+            return "e:" + e.getDeclaringClass().getName() + ":" + e.name();
+        }
+        return "s:" + value.toString();
+    }
+
+    private static String urlEncode(String s) {
+        try {
+            return URLEncoder.encode(s, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
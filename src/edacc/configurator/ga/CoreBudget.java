@@ -0,0 +1,40 @@
+package edacc.configurator.ga;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Divides the computation cores of a cluster between the tuning sessions of several
+ * experiments. Each session gets a share of the cores proportional to its weight.
+ * When a session finishes, its share is divided between the remaining sessions.
+ */
+public class CoreBudget {
+    private final int cores;
+    private final Map<Integer, Float> weights = new LinkedHashMap<Integer, Float>();
+
+    /**
+     * @param cores number of cores of the cluster
+     */
+    public CoreBudget(int cores) {
+        this.cores = cores;
+    }
+
+    public synchronized void add(int idExperiment, float weight) {
+        weights.put(idExperiment, weight);
+    }
+
+    public synchronized void remove(int idExperiment) {
+        weights.remove(idExperiment);
+    }
+
+    /**
+     * @return number of cores the session of the experiment can use, at least 1
+     */
+    public synchronized int getShare(int idExperiment) {
+        Float weight = weights.get(idExperiment);
+        if (weight == null) return cores;
+        float total = 0;
+        for (float w: weights.values()) total += w;
+        return Math.max(1, (int) (cores * weight / total));
+    }
+}
@@ -0,0 +1,301 @@
+package edacc.configurator.ga;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edacc.api.costfunctions.Average;
+import edacc.api.costfunctions.CostFunction;
+import edacc.api.costfunctions.Median;
+import edacc.api.costfunctions.PARX;
+import edacc.model.ExperimentResult;
+
+/**
+ * Incrementally updated cost of the finished runs of one solver configuration.
+ * The results are added one at a time as they finish, the cost and the bounds of
+ * the final cost can be read at any time without building result lists.
+ *
+ * getCost() and getCumulatedCost() return the same as calculateCost() and
+ * calculateCumulatedCost() of the cost function over the added results.
+ * Adding a result and reading the cost are O(1) for PARX and Average and
+ * O(log n) comparisons for Median.
+ *
+ * Accumulators for other cost functions can be registered with register(),
+ * cost functions without accumulator fall back to one that keeps the results
+ * and calls the cost function.
+ *
+ * Accumulators aren't thread-safe.
+ */
+public abstract class CostAccumulator {
+    public interface Factory {
+        CostAccumulator create(CostFunction costFunction);
+    }
+
+    private static final Map<Class<? extends CostFunction>, Factory> factories = new HashMap<Class<? extends CostFunction>, Factory>();
+
+    static {
+        register(PARX.class, new Factory() {
+            @Override
+            public CostAccumulator create(CostFunction costFunction) {
+                // the penalty factor is only exposed by the database representation "parX"
+                return new PARXAccumulator(Integer.valueOf(costFunction.databaseRepresentation().substring(3)));
+            }
+        });
+        register(Average.class, new Factory() {
+            @Override
+            public CostAccumulator create(CostFunction costFunction) {
+                return new AverageAccumulator();
+            }
+        });
+        register(Median.class, new Factory() {
+            @Override
+            public CostAccumulator create(CostFunction costFunction) {
+                return new MedianAccumulator();
+            }
+        });
+    }
+
+    /**
+     * Registers the accumulator of a cost function class, replaces the accumulator
+     * that was registered for the class before.
+     */
+    public static void register(Class<? extends CostFunction> type, Factory factory) {
+        synchronized (factories) {
+            factories.put(type, factory);
+        }
+    }
+
+    /**
+     * @return new empty accumulator for the cost function
+     */
+    public static CostAccumulator create(CostFunction costFunction) {
+        Factory factory;
+        synchronized (factories) {
+            factory = factories.get(costFunction.getClass());
+        }
+        if (factory == null) return new ListAccumulator(costFunction);
+        return factory.create(costFunction);
+    }
+
+    /** number of added results */
+    protected int numRuns = 0;
+
+    /**
+     * Adds the result of a finished run.
+     */
+    public abstract void add(ExperimentResult result);
+
+    /**
+     * @return cost of the single finished run, as calculateCumulatedCost of a list with only this result
+     */
+    public abstract float runCost(ExperimentResult result);
+
+    /**
+     * @return cost of the added runs
+     */
+    public abstract float getCost();
+
+    /**
+     * @return cumulated cost of the added runs
+     */
+    public abstract float getCumulatedCost();
+
+    /**
+     * Optimistic bound of the cost once numTotal runs have finished: the runs
+     * that didn't finish yet cost at least the time they already ran.
+     * @param numTotal number of runs including the added ones
+     * @param runningTime total time the unfinished runs already ran
+     */
+    public abstract float getLowerBound(int numTotal, float runningTime);
+
+    /**
+     * Pessimistic bound of the cost once numTotal runs have finished: the runs
+     * that didn't finish yet reach the CPU time limit.
+     * @param numTotal number of runs including the added ones
+     * @param cpuTimeLimit CPU time limit of the unfinished runs
+     */
+    public abstract float getUpperBound(int numTotal, int cpuTimeLimit);
+
+    public int getNumRuns() {
+        return numRuns;
+    }
+
+    private static boolean isSuccessful(ExperimentResult result) {
+        return String.valueOf(result.getResultCode().getResultCode()).startsWith("1");
+    }
+
+    /**
+     * Sum of the run costs divided by the number of runs. Crashed runs cost 0.
+     */
+    private static abstract class MeanAccumulator extends CostAccumulator {
+        /** sum of the run costs */
+        protected double sum = 0;
+
+        @Override
+        public void add(ExperimentResult result) {
+            sum += runCost(result);
+            numRuns++;
+        }
+
+        @Override
+        public float getCost() {
+            return numRuns == 0 ? 0 : (float) (sum / numRuns);
+        }
+
+        @Override
+        public float getCumulatedCost() {
+            return (float) sum;
+        }
+
+        @Override
+        public float getLowerBound(int numTotal, float runningTime) {
+            if (numTotal == 0) return 0;
+            return (float) ((sum + runningTime) / numTotal);
+        }
+
+        @Override
+        public float getUpperBound(int numTotal, int cpuTimeLimit) {
+            if (numTotal == 0) return 0;
+            return (float) ((sum + (numTotal - numRuns) * maxRunCost(cpuTimeLimit)) / numTotal);
+        }
+
+        protected abstract float maxRunCost(int cpuTimeLimit);
+    }
+
+    public static class PARXAccumulator extends MeanAccumulator {
+        private final int penaltyFactor;
+
+        public PARXAccumulator(int penaltyFactor) {
+            this.penaltyFactor = penaltyFactor;
+        }
+
+        @Override
+        public float runCost(ExperimentResult result) {
+            if (result.getStatus().getStatusCode() <= 0) return 0;
+            if (isSuccessful(result)) return result.getResultTime();
+            return result.getCPUTimeLimit() * (float) penaltyFactor;
+        }
+
+        @Override
+        protected float maxRunCost(int cpuTimeLimit) {
+            return cpuTimeLimit * (float) penaltyFactor;
+        }
+    }
+
+    public static class AverageAccumulator extends MeanAccumulator {
+        @Override
+        public float runCost(ExperimentResult result) {
+            return result.getStatus().getStatusCode() > 0 ? result.getResultTime() : 0;
+        }
+
+        @Override
+        protected float maxRunCost(int cpuTimeLimit) {
+            return cpuTimeLimit;
+        }
+    }
+
+    /**
+     * Upper median (the value at index n / 2 of the sorted values) of the times of the
+     * runs that didn't crash. The values are kept sorted, the insertion position is found
+     * by binary search and the values after it are moved with a single arraycopy.
+     */
+    public static class MedianAccumulator extends CostAccumulator {
+        private float[] sorted = new float[16];
+        private int size = 0;
+        private double sum = 0;
+
+        @Override
+        public void add(ExperimentResult result) {
+            numRuns++;
+            if (result.getStatus().getStatusCode() <= 0) return;
+            float time = result.getResultTime();
+            if (size == sorted.length) sorted = Arrays.copyOf(sorted, size * 2);
+            int pos = Arrays.binarySearch(sorted, 0, size, time);
+            if (pos < 0) pos = -pos - 1;
+            System.arraycopy(sorted, pos, sorted, pos + 1, size - pos);
+            sorted[pos] = time;
+            size++;
+            sum += time;
+        }
+
+        @Override
+        public float runCost(ExperimentResult result) {
+            return result.getStatus().getStatusCode() > 0 ? result.getResultTime() : 0;
+        }
+
+        @Override
+        public float getCost() {
+            return size == 0 ? 0 : sorted[size / 2];
+        }
+
+        @Override
+        public float getCumulatedCost() {
+            return (float) sum;
+        }
+
+        @Override
+        public float getLowerBound(int numTotal, float runningTime) {
+            // the unfinished runs are assumed to finish immediately (cost 0) and sort before all values
+            int missing = Math.max(0, numTotal - numRuns);
+            int ix = (size + missing) / 2;
+            if (ix < missing || size == 0) return 0;
+            return sorted[ix - missing];
+        }
+
+        @Override
+        public float getUpperBound(int numTotal, int cpuTimeLimit) {
+            // the unfinished runs reach the time limit and sort after all values
+            int missing = Math.max(0, numTotal - numRuns);
+            int ix = (size + missing) / 2;
+            if (ix >= size) return size + missing == 0 ? 0 : cpuTimeLimit;
+            return sorted[ix];
+        }
+    }
+
+    /**
+     * Accumulator of cost functions without a registered accumulator. It keeps all
+     * results and calls the cost function, the bounds are 0 and infinity.
+     */
+    public static class ListAccumulator extends CostAccumulator {
+        private final CostFunction costFunction;
+        private final List<ExperimentResult> results = new ArrayList<ExperimentResult>();
+
+        public ListAccumulator(CostFunction costFunction) {
+            this.costFunction = costFunction;
+        }
+
+        @Override
+        public void add(ExperimentResult result) {
+            results.add(result);
+            numRuns++;
+        }
+
+        @Override
+        public float runCost(ExperimentResult result) {
+            return costFunction.calculateCumulatedCost(Collections.singletonList(result));
+        }
+
+        @Override
+        public float getCost() {
+            return costFunction.calculateCost(results);
+        }
+
+        @Override
+        public float getCumulatedCost() {
+            return costFunction.calculateCumulatedCost(results);
+        }
+
+        @Override
+        public float getLowerBound(int numTotal, float runningTime) {
+            return 0;
+        }
+
+        @Override
+        public float getUpperBound(int numTotal, int cpuTimeLimit) {
+            return Float.POSITIVE_INFINITY;
+        }
+    }
+}
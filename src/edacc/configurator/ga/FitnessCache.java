@@ -0,0 +1,183 @@
+package edacc.configurator.ga;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import edacc.parameterspace.Parameter;
+import edacc.parameterspace.ParameterConfiguration;
+
+/**
+ * In-process cache of the solver configurations of an experiment, keyed by the
+ * canonical form of their parameter configuration. Each entry holds the ID of the
+ * solver configuration, its name, its cost and the number of runs the cost is based on.
+ *
+ * The cache holds at most maxSize entries and evicts the least recently used ones.
+ * It can be saved to and loaded from a local file so restarted sessions start warm.
+ */
+public class FitnessCache {
+    private static final int FILE_VERSION = 1;
+
+    public static class Entry {
+        private final int idSolverConfiguration;
+        private final String name;
+        private final Float cost;
+        private final int numRuns;
+
+        /**
+         * @param idSolverConfiguration 0 if the configuration doesn't exist
+         * @param name
+         * @param cost null if the configuration wasn't evaluated yet
+         * @param numRuns number of runs the cost is based on, 0 if unknown
+         */
+        public Entry(int idSolverConfiguration, String name, Float cost, int numRuns) {
+            this.idSolverConfiguration = idSolverConfiguration;
+            this.name = name;
+            this.cost = cost;
+            this.numRuns = numRuns;
+        }
+
+        public final int getIdSolverConfiguration() {
+            return idSolverConfiguration;
+        }
+
+        public final String getName() {
+            return name;
+        }
+
+        public final Float getCost() {
+            return cost;
+        }
+
+        public final int getNumRuns() {
+            return numRuns;
+        }
+    }
+
+    private final int idExperiment;
+    private final Map<String, Entry> entries;
+    private int hits = 0;
+    private int misses = 0;
+
+    public FitnessCache(int idExperiment, final int maxSize) {
+        this.idExperiment = idExperiment;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, FitnessCache.Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Canonical form of a parameter configuration: the values of all set parameters
+     * sorted by parameter name.
+     */
+    public static String canonicalKey(ParameterConfiguration config) {
+        List<Parameter> params = new ArrayList<Parameter>(config.getParameter_instances().keySet());
+        Collections.sort(params);
+        StringBuilder key = new StringBuilder();
+        for (Parameter p: params) {
+            Object value = config.getParameterValue(p);
+            if (value == null) continue;
+            key.append(p.getName()).append('=').append(value.toString()).append(';');
+        }
+        return key.toString();
+    }
+
+    /**
+     * @return the cached entry or null on a cache miss
+     */
+    public synchronized Entry get(ParameterConfiguration config) {
+        Entry entry = entries.get(canonicalKey(config));
+        if (entry == null) misses++;
+        else hits++;
+        return entry;
+    }
+
+    public synchronized void put(ParameterConfiguration config, Entry entry) {
+        entries.put(canonicalKey(config), entry);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized int getHits() {
+        return hits;
+    }
+
+    public synchronized int getMisses() {
+        return misses;
+    }
+
+    /**
+     * Loads the entries of the given file if it exists and belongs to the same experiment.
+     */
+    public synchronized void load(File file) throws IOException {
+        if (!file.exists()) return;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != FILE_VERSION || in.readInt() != idExperiment) return;
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                String key = in.readUTF();
+                int idSolverConfiguration = in.readInt();
+                String name = in.readBoolean() ? in.readUTF() : null;
+                Float cost = in.readBoolean() ? in.readFloat() : null;
+                int numRuns = in.readInt();
+                entries.put(key, new Entry(idSolverConfiguration, name, cost, numRuns));
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Saves all entries of existing solver configurations. The file is written
+     * to a temporary file first and then renamed.
+     */
+    public synchronized void save(File file) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+        try {
+            int size = 0;
+            for (Entry entry: entries.values()) {
+                if (entry.getIdSolverConfiguration() != 0) size++;
+            }
+            out.writeInt(FILE_VERSION);
+            out.writeInt(idExperiment);
+            out.writeInt(size);
+            for (Map.Entry<String, Entry> e: entries.entrySet()) {
+                Entry entry = e.getValue();
+                if (entry.getIdSolverConfiguration() == 0) continue;
+                out.writeUTF(e.getKey());
+                out.writeInt(entry.getIdSolverConfiguration());
+                out.writeBoolean(entry.getName() != null);
+                if (entry.getName() != null) out.writeUTF(entry.getName());
+                out.writeBoolean(entry.getCost() != null);
+                if (entry.getCost() != null) out.writeFloat(entry.getCost());
+                out.writeInt(entry.getNumRuns());
+            }
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(file)) {
+            // renameTo doesn't replace existing files on all platforms
+            file.delete();
+            if (!tmp.renameTo(file)) throw new IOException("Couldn't write fitness cache file " + file);
+        }
+    }
+}
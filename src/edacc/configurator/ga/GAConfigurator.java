@@ -2,21 +2,30 @@ package edacc.configurator.ga;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
 import java.util.Scanner;
+import java.util.Set;
 
-import edacc.api.API;
-import edacc.api.APIImpl;
 import edacc.api.costfunctions.CostFunction;
 import edacc.api.costfunctions.PARX;
 import edacc.model.ExperimentResult;
-import edacc.model.StatusCode;
+import edacc.configurator.ga.backend.EDACCBackend;
+import edacc.configurator.ga.backend.EvaluationBackend;
+import edacc.configurator.ga.backend.InstrumentedBackend;
+import edacc.configurator.ga.backend.LaunchBatch;
+import edacc.configurator.ga.backend.LocalBackend;
 import edacc.parameterspace.ParameterConfiguration;
 import edacc.parameterspace.graph.ParameterGraph;
+import edacc.util.MersenneTwister;
 import edacc.util.Pair;
 
 /**
@@ -48,6 +57,114 @@ import edacc.util.Pair;
  * 
  * Evaluation of each individual is done on all instances of the EDACC experiment.
  * The cost of an inidividual is its average runtime of all runs.
+ * 
+ * The jobs are run by an EvaluationBackend: the EDACC database and its computation
+ * clients (backend = edacc, default) or the solver binary on the local machine
+ * (backend = local, see LocalBackend).
+ * 
+ * ----
+ * 
+ * Steady-state mode (steadyState = 1 in the configuration file):
+ * after the initial population has been evaluated, a single offspring is created
+ * (tournament selection, crossover, mutation) and launched whenever the computation
+ * cores of the experiment aren't saturated. Each offspring that finishes replaces
+ * the worst individual of the population if it is better.
+ * Every populationSize finished offspring count as one generation for the termination criterion.
+ * Racing and intensification can't be combined with steady-state mode.
+ * 
+ * ----
+ * 
+ * Racing (racing = 1): the new individuals of a generation are raced against each other
+ * while their jobs run (see Race). Individuals that are significantly worse on the
+ * instance/seed pairs all of them finished are stopped early and get a censored cost.
+ * 
+ * ----
+ * 
+ * Intensification (intensification = 1): the new individuals of a generation only run the
+ * first intensificationRuns instance/seed pairs of the course. Afterwards the configurations
+ * of the population are compared on the same course prefixes and only the competitive ones
+ * are topped up with more runs, up to the number of runs of the generation (see intensify()).
+ * 
+ * ----
+ * 
+ * Job priorities (jobPriorities = 1): the waiting jobs are prioritized by their role in the
+ * search (see JobPriorities): intensification runs of the incumbent first, then those of the
+ * challengers and the SLS neighbours of the best individual, then all other jobs. Individuals
+ * that can't win a tournament (or replace an individual in steady-state mode) anymore get the
+ * lowest priority. Waiting jobs gain one priority every jobPriorityAging seconds.
+ * 
+ * ----
+ * 
+ * Checkpoints (checkpointFile = <path>): the search state is written to the checkpoint file
+ * whenever jobs are launched or individuals finish (see Checkpoint). With resume = 1 a session
+ * continues from the checkpoint and waits for the jobs that were still running instead of
+ * launching them again.
+ * 
+ * ----
+ * 
+ * Surrogate pre-screening (surrogate = 1): a k-nearest-neighbour model of the cost
+ * (see Surrogate) is trained on all evaluated individuals. Once it has enough samples,
+ * surrogateOversampling times as many offspring (and SLS neighbours) as needed are
+ * created and only the ones with the lowest predicted cost are launched. Aborted SLS
+ * neighbours and individuals eliminated by racing only have censored costs and aren't
+ * added to the model.
+ * 
+ * ----
+ * 
+ * Island model (islands = <n>): n configurator processes, possibly on different hosts,
+ * each evolve their own population against the same experiment and exchange their best
+ * individuals through a shared directory (migrationDirectory, see Migration). Every
+ * migrationInterval generations each island sends its migrants best individuals to the
+ * next island; the received individuals replace random offspring of the next generation
+ * (in steady-state mode they are launched as additional offspring).
+ * All islands can share one configuration file: the island number is the second command
+ * line argument (or island = <i>) and lines of the form key[i] = value only apply to
+ * island i, e.g. crossoverProbability[1] = 0.6. Island i uses seed + i unless it has its
+ * own seed[i]. Likewise the files of an island (checkpointFile, fitnessCacheFile, metricsFile,
+ * runHistoryFile and localRunStore) get the suffix .island<i> unless they are set with key[i],
+ * islands never write to the same file.
+ * 
+ * ----
+ * 
+ * Host mode (see TuningHost): the sessions of several experiments run in one process
+ * with a shared database connection pool, job tracker and core budget. Each session has
+ * its own configuration file; coreWeight sets its share of the cores of the host.
+ * 
+ * ----
+ * 
+ * Run history (runHistoryFile = <path>): all finished runs are stored in a memory-mapped
+ * columnar file (see RunHistory) that later sessions of the experiment continue. Costs of
+ * existing configurations and the ranking of useExistingConfigs are computed from it, and
+ * the best configurations are reported at the end of the session.
+ * 
+ * ----
+ * 
+ * Replay (see Replay): the runs of a run history can be replayed offline on a simulated
+ * cluster (see ReplayBackend) to compare GA settings and seeds in minutes, e.g.
+ * java -cp GA.jar edacc.configurator.ga.Replay contrib/replayconfig
+ * 
+ * ----
+ * 
+ * Pipelining (pipelining = 1, generational mode): the offspring of the next generation are
+ * bred while the current generation is still running (see OffspringPipeline). Tournaments
+ * are decided with the costs of the finished runs and the speculative children are launched
+ * whenever cores are free. At the end of the generation the tournaments are decided again;
+ * children of unchanged winners are kept with their runs, the others are killed.
+ * 
+ * ----
+ * 
+ * Deduplication (deduplication = 1): new offspring that are equal to an individual of the
+ * population or to another offspring (or within duplicateDistance of one, see GenotypeIndex)
+ * are mutated again, up to duplicateRetries times, before they are looked up and launched.
+ * With crowding = 1 in steady-state mode finished offspring replace the nearest of
+ * crowdingWindow random individuals instead of the worst individual if they are better.
+ * 
+ * ----
+ * 
+ * Metrics (see Metrics): the time spent in each phase and in each backend call, job,
+ * CPU time, queue wait, cache and SLS statistics and the cost distribution of each
+ * generation. They are appended as JSON lines to metricsFile after every generation
+ * and registered as MBean with metricsMBean = 1.
  */
 public class GAConfigurator {
     private int populationSize = 40;
@@ -62,12 +179,45 @@ public class GAConfigurator {
     
     private int terminationCriterionHits = 0;
     private int idExperiment;
-    private API api;
+    private EvaluationBackend api;
+    private JobTracker tracker;
+    private boolean sharedTracker = false;
+    private CoreBudget budget = null;
+    private Metrics metrics = new Metrics();
+    private FitnessCache fitnessCache;
+    private File fitnessCacheFile = null;
     //private List<InstanceSeedPair> parcour;
-    private Random rng;
+    private MersenneTwister rng;
     private ParameterGraph pspace;
     private int jobCPUTimeLimit;
     private boolean use2PointCrossover = false;
+    private boolean steadyState = false;
+    private boolean racing = false;
+    private float racingAlpha = 0.05f;
+    private int racingMinRuns = 5;
+    private boolean intensification = false;
+    private int intensificationRuns = 5;
+    private JobPriorities priorities = null;
+    private File checkpointFile = null;
+    private boolean resume = false;
+    private Surrogate surrogate = null;
+    private int surrogateOversampling = 4;
+    private int surrogateMinSamples = 20;
+    private Migration migration = null;
+    private RunHistory history = null;
+    private OffspringPipeline pipeline = null;
+    private GenotypeIndex genotypes = null;
+    private boolean deduplication = false;
+    private float duplicateDistance = 0;
+    private int duplicateRetries = 5;
+    private boolean crowding = false;
+    private int crowdingWindow = 0;
+    
+    // search state, kept in fields so it can be checkpointed
+    private Individual globalBest = null;
+    private Float generationAverage = null;
+    private int generation = 1;
+    private int finishedOffspring = 0;
 
     /** 
      * Read config file and start the configuration
@@ -76,10 +226,35 @@ public class GAConfigurator {
      */
     public static void main(String... args) throws Exception {
         if (args.length < 1) {
-            System.out.println("Missing configuration file. Use java -jar GA.jar <config file path>");
+            System.out.println("Missing configuration file. Use java -jar GA.jar <config file path> [island]");
             return;
         }
-        Scanner scanner = new Scanner(new File(args[0]));
+        GAConfigurator ga = configure(new File(args[0]), args.length > 1 ? Integer.valueOf(args[1]) : -1, null);
+        if (ga == null) return;
+        ga.run();
+        ga.shutdown();
+    }
+
+    /**
+     * Creates a configurator from a configuration file (see contrib/config).
+     * @param file
+     * @param island island number, -1 to take it from the file
+     * @param host host that runs the session together with the sessions of other experiments,
+     * null for a standalone session. The sessions of a host use its database connection, job
+     * tracker and core budget, the database and backend settings of the file are ignored.
+     * @return null if the configuration is incomplete
+     */
+    public static GAConfigurator configure(File file, int island, TuningHost host) throws Exception {
+        if (island < 0) {
+            // the island can also be set in the configuration file itself
+            Scanner scanner = new Scanner(file);
+            while (scanner.hasNextLine()) {
+                String[] keyval = scanner.nextLine().split("=");
+                if ("island".equals(keyval[0].trim())) island = Integer.valueOf(keyval[1].trim());
+            }
+            scanner.close();
+        }
+        Scanner scanner = new Scanner(file);
         String hostname = "", user = "", password = "", database = "";
         int idExperiment = 0;
         int port = 3306;
@@ -92,8 +267,46 @@ public class GAConfigurator {
         int jobCPUTimeLimit = 13;
         int numRunsPerInstance = 2;
         long seed = System.currentTimeMillis();
+        boolean islandSeed = false;
         boolean use2PointCrossover = false;
         boolean useExistingConfigs = false;
+        boolean steadyState = false;
+        String fitnessCacheFile = null;
+        int fitnessCacheSize = 100000;
+        boolean racing = false;
+        float racingAlpha = 0.05f;
+        int racingMinRuns = 5;
+        boolean intensification = false;
+        int intensificationRuns = 5;
+        boolean jobPriorities = false;
+        int jobPriorityAging = 300;
+        String backend = "edacc";
+        String localParameterGraph = null, localSolverCommand = null, localInstances = null;
+        String localParameterPrefix = "-", localRunStore = null;
+        int localCores = Runtime.getRuntime().availableProcessors();
+        String checkpointFile = null;
+        boolean resume = false;
+        boolean surrogate = false;
+        int surrogateNeighbours = 5;
+        int surrogateOversampling = 4;
+        int surrogateMinSamples = 20;
+        int surrogateMaxSamples = 5000;
+        String metricsFile = null;
+        boolean metricsMBean = false;
+        int islands = 1;
+        String migrationDirectory = null;
+        int migrationInterval = 5;
+        int migrants = 2;
+        float coreWeight = 1;
+        String runHistoryFile = null;
+        boolean pipelining = false;
+        boolean deduplication = false;
+        float duplicateDistance = 0;
+        int duplicateRetries = 5;
+        boolean crowding = false;
+        int crowdingWindow = 0;
+        // keys that were set for this island with key[i] = value
+        Set<String> islandKeys = new HashSet<String>();
         
         while (scanner.hasNextLine()) {
             String line = scanner.nextLine();
@@ -101,6 +314,14 @@ public class GAConfigurator {
             String[] keyval = line.split("=");
             String key = keyval[0].trim();
             String value = keyval[1].trim();
+            int bracket = key.indexOf('[');
+            if (bracket > 0 && key.endsWith("]")) {
+                // setting of a single island
+                if (Integer.valueOf(key.substring(bracket + 1, key.length() - 1)) != island) continue;
+                key = key.substring(0, bracket).trim();
+                if ("seed".equals(key)) islandSeed = true;
+                islandKeys.add(key);
+            }
             if ("host".equals(key)) hostname = value;
             else if ("user".equals(key)) user = value;
             else if ("password".equals(key)) password = value;
@@ -118,14 +339,101 @@ public class GAConfigurator {
             else if ("seed".equals(key)) seed = Long.valueOf(value);
             else if ("useExistingConfigs".equals(key)) useExistingConfigs = Integer.valueOf(value) == 1;
             else if ("use2PointCrossover".equals(key)) use2PointCrossover = Integer.valueOf(value) == 1;
+            else if ("steadyState".equals(key)) steadyState = Integer.valueOf(value) == 1;
+            else if ("fitnessCacheFile".equals(key)) fitnessCacheFile = value;
+            else if ("fitnessCacheSize".equals(key)) fitnessCacheSize = Integer.valueOf(value);
+            else if ("racing".equals(key)) racing = Integer.valueOf(value) == 1;
+            else if ("racingAlpha".equals(key)) racingAlpha = Float.valueOf(value);
+            else if ("racingMinRuns".equals(key)) racingMinRuns = Integer.valueOf(value);
+            else if ("intensification".equals(key)) intensification = Integer.valueOf(value) == 1;
+            else if ("intensificationRuns".equals(key)) intensificationRuns = Integer.valueOf(value);
+            else if ("jobPriorities".equals(key)) jobPriorities = Integer.valueOf(value) == 1;
+            else if ("jobPriorityAging".equals(key)) jobPriorityAging = Integer.valueOf(value);
+            else if ("backend".equals(key)) backend = value;
+            else if ("localParameterGraph".equals(key)) localParameterGraph = value;
+            else if ("localSolverCommand".equals(key)) localSolverCommand = value;
+            else if ("localInstances".equals(key)) localInstances = value;
+            else if ("localParameterPrefix".equals(key)) localParameterPrefix = value;
+            else if ("localCores".equals(key)) localCores = Integer.valueOf(value);
+            else if ("localRunStore".equals(key)) localRunStore = value;
+            else if ("checkpointFile".equals(key)) checkpointFile = value;
+            else if ("resume".equals(key)) resume = Integer.valueOf(value) == 1;
+            else if ("surrogate".equals(key)) surrogate = Integer.valueOf(value) == 1;
+            else if ("surrogateNeighbours".equals(key)) surrogateNeighbours = Integer.valueOf(value);
+            else if ("surrogateOversampling".equals(key)) surrogateOversampling = Integer.valueOf(value);
+            else if ("surrogateMinSamples".equals(key)) surrogateMinSamples = Integer.valueOf(value);
+            else if ("surrogateMaxSamples".equals(key)) surrogateMaxSamples = Integer.valueOf(value);
+            else if ("metricsFile".equals(key)) metricsFile = value;
+            else if ("metricsMBean".equals(key)) metricsMBean = Integer.valueOf(value) == 1;
+            else if ("islands".equals(key)) islands = Integer.valueOf(value);
+            else if ("migrationDirectory".equals(key)) migrationDirectory = value;
+            else if ("migrationInterval".equals(key)) migrationInterval = Integer.valueOf(value);
+            else if ("migrants".equals(key)) migrants = Integer.valueOf(value);
+            else if ("coreWeight".equals(key)) coreWeight = Float.valueOf(value);
+            else if ("runHistoryFile".equals(key)) runHistoryFile = value;
+            else if ("pipelining".equals(key)) pipelining = Integer.valueOf(value) == 1;
+            else if ("deduplication".equals(key)) deduplication = Integer.valueOf(value) == 1;
+            else if ("duplicateDistance".equals(key)) duplicateDistance = Float.valueOf(value);
+            else if ("duplicateRetries".equals(key)) duplicateRetries = Integer.valueOf(value);
+            else if ("crowding".equals(key)) crowding = Integer.valueOf(value) == 1;
+            else if ("crowdingWindow".equals(key)) crowdingWindow = Integer.valueOf(value);
         }
         scanner.close();
-        GAConfigurator ga = new GAConfigurator(hostname, port, user, password, database,
+        if (steadyState && (racing || intensification)) {
+            System.out.println("Racing and intensification only work in generational mode, not with steadyState.");
+            return null;
+        }
+        if (islands > 1) {
+            if (island < 0 || migrationDirectory == null) {
+                System.out.println("The island model needs the island number and a migrationDirectory.");
+                return null;
+            }
+            // islands never share a random number stream
+            if (!islandSeed) seed += island;
+            // nor their files: the processes would overwrite each other's checkpoints and
+            // corrupt the run history and run store, which are written by a single process
+            String suffix = ".island" + island;
+            if (checkpointFile != null && !islandKeys.contains("checkpointFile")) checkpointFile += suffix;
+            if (fitnessCacheFile != null && !islandKeys.contains("fitnessCacheFile")) fitnessCacheFile += suffix;
+            if (metricsFile != null && !islandKeys.contains("metricsFile")) metricsFile += suffix;
+            if (runHistoryFile != null && !islandKeys.contains("runHistoryFile")) runHistoryFile += suffix;
+            if (localRunStore != null && !islandKeys.contains("localRunStore")) localRunStore += suffix;
+        }
+        EvaluationBackend evaluationBackend;
+        if (host != null) {
+            evaluationBackend = host.getBackend();
+        } else if ("local".equals(backend)) {
+            if (localParameterGraph == null || localSolverCommand == null || localInstances == null) {
+                System.out.println("The local backend needs localParameterGraph, localSolverCommand and localInstances.");
+                return null;
+            }
+            evaluationBackend = new LocalBackend(localParameterGraph, localSolverCommand,
+                    LocalBackend.readInstances(new File(localInstances)), numRunsPerInstance,
+                    localParameterPrefix, localCores, localRunStore == null ? null : new File(localRunStore), seed);
+        } else {
+            evaluationBackend = new EDACCBackend(hostname, port, database, user, password);
+        }
+        GAConfigurator ga = new GAConfigurator(evaluationBackend, host == null ? null : host.getTracker(),
                 idExperiment, populationSize, tournamentSize, crossoverProbability, mutationProbability,
                 mutationStandardDeviationFactor, maxTerminationCriterionHits, numRunsPerInstance,
                 jobCPUTimeLimit, seed, use2PointCrossover, useExistingConfigs);
-        ga.evolve();
-        ga.shutdown();
+        ga.setSteadyState(steadyState);
+        ga.setRacing(racing, racingAlpha, racingMinRuns);
+        ga.setIntensification(intensification, intensificationRuns);
+        if (jobPriorities) ga.setJobPriorities(jobPriorityAging);
+        if (fitnessCacheFile != null) ga.loadFitnessCache(new File(fitnessCacheFile), fitnessCacheSize);
+        if (checkpointFile != null) ga.setCheckpointFile(new File(checkpointFile), resume);
+        if (metricsFile != null) ga.getMetrics().setOutput(new File(metricsFile));
+        if (metricsMBean) ga.getMetrics().registerMBean(idExperiment);
+        if (surrogate) ga.setSurrogate(surrogateNeighbours, surrogateMaxSamples, surrogateOversampling, surrogateMinSamples);
+        if (islands > 1) ga.setMigration(new Migration(new File(migrationDirectory), island, islands,
+                migrationInterval, migrants, ga.getMetrics()));
+        if (host != null && host.getBudget() != null) ga.setCoreBudget(host.getBudget(), coreWeight);
+        if (runHistoryFile != null) ga.setRunHistory(new File(runHistoryFile));
+        ga.setPipelining(pipelining);
+        ga.setDeduplication(deduplication, duplicateDistance, duplicateRetries);
+        ga.setCrowding(crowding, crowdingWindow);
+        return ga;
     }
 
     public GAConfigurator(String hostname, int port, String username,
@@ -135,9 +443,36 @@ public class GAConfigurator {
             int maxTerminationCriterionHits,
             int numRunsPerInstance, int jobCPUTimeLimit, long seed, boolean use2PointCrossover,
             boolean useExistingConfigs) throws Exception {
+        this(new EDACCBackend(hostname, port, database, username, password), idExperiment,
+                populationSize, tournamentSize, crossoverProbability, mutationProbability,
+                mutationStandardDeviationFactor, maxTerminationCriterionHits, numRunsPerInstance,
+                jobCPUTimeLimit, seed, use2PointCrossover, useExistingConfigs);
+    }
+
+    public GAConfigurator(EvaluationBackend backend, int idExperiment,
+            int populationSize, int tournamentSize, float crossoverProbability,
+            float mutationProbability, float mutationStandardDeviationFactor,
+            int maxTerminationCriterionHits,
+            int numRunsPerInstance, int jobCPUTimeLimit, long seed, boolean use2PointCrossover,
+            boolean useExistingConfigs) throws Exception {
+        this(backend, null, idExperiment, populationSize, tournamentSize, crossoverProbability, mutationProbability,
+                mutationStandardDeviationFactor, maxTerminationCriterionHits, numRunsPerInstance,
+                jobCPUTimeLimit, seed, use2PointCrossover, useExistingConfigs);
+    }
+
+    /**
+     * @param tracker job tracker that is shared with the configurators of other experiments,
+     * null to start an own tracker. Configurators with a shared tracker don't shut down the
+     * tracker and the backend.
+     */
+    public GAConfigurator(EvaluationBackend backend, JobTracker tracker, int idExperiment,
+            int populationSize, int tournamentSize, float crossoverProbability,
+            float mutationProbability, float mutationStandardDeviationFactor,
+            int maxTerminationCriterionHits,
+            int numRunsPerInstance, int jobCPUTimeLimit, long seed, boolean use2PointCrossover,
+            boolean useExistingConfigs) throws Exception {
         if (populationSize % 2 != 0 || populationSize <= 0) throw new IllegalArgumentException("Population size has to be a multiple of 2 and >= 2.");
-        api = new APIImpl();
-        api.connect(hostname, port, database, username, password);
+        api = new InstrumentedBackend(backend, metrics);
         this.idExperiment = idExperiment;
         this.populationSize = populationSize;
         this.tournamentSize = tournamentSize;
@@ -146,25 +481,427 @@ public class GAConfigurator {
         this.mutationStandardDeviationFactor = mutationStandardDeviationFactor;
         this.maxTerminationCriterionHits = maxTerminationCriterionHits;
         this.useExistingConfigs = useExistingConfigs;
-        rng = new edacc.util.MersenneTwister(seed);
-        pspace = api.loadParameterGraphFromDB(idExperiment);
+        rng = new MersenneTwister(seed);
+        pspace = api.loadParameterGraph(idExperiment);
         if (pspace == null) throw new Exception("No parameter graph found.");
         this.jobCPUTimeLimit = jobCPUTimeLimit;
+        if (tracker == null) {
+            this.tracker = new JobTracker(api, jobCPUTimeLimit, metrics);
+            this.tracker.start();
+        } else {
+            this.tracker = tracker;
+            this.sharedTracker = true;
+        }
+        fitnessCache = new FitnessCache(idExperiment, 100000);
+    }
+
+    /**
+     * Runs the evolution, steady-state or generational.
+     */
+    public void run() throws Exception {
+        if (isSteadyState()) evolveSteadyState();
+        else evolve();
     }
 
-    public void shutdown() {
+    public void shutdown() throws Exception {
+        if (budget != null) budget.remove(idExperiment);
+        saveFitnessCache();
+        metrics.close();
+        if (history != null) {
+            reportHistory();
+            history.close();
+        }
+        if (sharedTracker) return;
+        tracker.shutdown();
         api.disconnect();
     }
 
+    public int getIdExperiment() {
+        return idExperiment;
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return best individual found so far, null before the first evaluation
+     */
+    public Individual getGlobalBest() {
+        return globalBest;
+    }
+
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Records the cost distribution of the population and the cache statistics
+     * of the current generation in the metrics.
+     */
+    protected void recordMetrics(List<Individual> population) {
+        metrics.set("cache.hits", fitnessCache.getHits());
+        metrics.set("cache.misses", fitnessCache.getMisses());
+        if (genotypes != null) {
+            genotypes.clear();
+            genotypes.addAll(population);
+            metrics.set("diversity.genotypes", genotypes.getNumGenotypes());
+            metrics.set("diversity.distance", genotypes.meanNearestDistance());
+        }
+        metrics.recordGeneration(generation, population);
+    }
+
+    /**
+     * Replaces the fitness cache with a cache of the given size that is
+     * loaded from and saved to the given file.
+     */
+    public void loadFitnessCache(File file, int maxSize) throws Exception {
+        fitnessCache = new FitnessCache(idExperiment, maxSize);
+        fitnessCache.load(file);
+        fitnessCacheFile = file;
+        System.out.println("loaded " + fitnessCache.size() + " fitness cache entries from " + file);
+    }
+
+    protected void saveFitnessCache() throws Exception {
+        if (fitnessCacheFile != null) fitnessCache.save(fitnessCacheFile);
+    }
+
+    /**
+     * Looks up the solver configuration of the given parameter configuration.
+     * The database is only queried on a fitness cache miss. Configurations that don't exist
+     * aren't cached, another island or process can create them at any time.
+     * @return cache entry, its idSolverConfiguration is 0 if the configuration doesn't exist yet
+     */
+    protected FitnessCache.Entry lookup(ParameterConfiguration config) throws Exception {
+        FitnessCache.Entry entry = fitnessCache.get(config);
+        if (entry != null) return entry;
+        int idSolverConfig = api.exists(idExperiment, config);
+        if (idSolverConfig == 0) return new FitnessCache.Entry(0, null, null, 0);
+        entry = new FitnessCache.Entry(idSolverConfig, api.getSolverConfigName(idSolverConfig),
+                api.getSolverConfigurationCost(idSolverConfig), 0);
+        fitnessCache.put(config, entry);
+        return entry;
+    }
+
+    /**
+     * Cost of the existing solver configuration of the individual on at least minRuns runs.
+     * The run history and the database are only queried if the cache doesn't know such a
+     * cost yet, e.g. because the cached cost is based on a prefix of the course. The history
+     * also has the finished runs of cancelled evaluations and the database cost can be
+     * the one of an earlier generation, so both only count with at least minRuns runs.
+     * @param minRuns number of runs the individuals of the generation are evaluated on
+     * @return null if there is no cost on at least minRuns runs
+     */
+    protected Float lookupCost(Individual ind, int minRuns) throws Exception {
+        FitnessCache.Entry entry = lookup(ind.getConfig());
+        if (entry.getIdSolverConfiguration() == ind.getIdSolverConfiguration() && entry.getCost() != null
+                && entry.getNumRuns() >= minRuns) {
+            return entry.getCost();
+        }
+        Float cost = null;
+        int numRuns = 0;
+        if (history != null) {
+            numRuns = history.getNumRuns(ind.getIdSolverConfiguration());
+            if (numRuns >= minRuns) cost = history.getCost(costFunction, ind.getIdSolverConfiguration(), null);
+        }
+        if (cost == null) {
+            numRuns = 0;
+            for (ExperimentResult result: api.getRuns(idExperiment, ind.getIdSolverConfiguration())) {
+                if (JobTracker.isFinished(result) && !tracker.isKilled(result)) numRuns++;
+            }
+            if (numRuns >= minRuns) cost = api.getSolverConfigurationCost(ind.getIdSolverConfiguration());
+        }
+        if (cost != null) {
+            fitnessCache.put(ind.getConfig(), new FitnessCache.Entry(ind.getIdSolverConfiguration(), ind.getName(), cost, numRuns));
+        }
+        return cost;
+    }
+
+    protected void cacheIndividual(Individual ind, int numRuns) {
+        fitnessCache.put(ind.getConfig(), new FitnessCache.Entry(ind.getIdSolverConfiguration(), ind.getName(), ind.getCost(), numRuns));
+        if (surrogate != null && ind.getCost() != null) surrogate.add(ind.getConfig(), ind.getCost());
+    }
+
+    public boolean isSteadyState() {
+        return steadyState;
+    }
+
+    public void setSteadyState(boolean steadyState) {
+        this.steadyState = steadyState;
+    }
+
+    /**
+     * @param racing race the new individuals of each generation
+     * @param alpha significance level of the racing tests
+     * @param minRuns minimum number of common runs before individuals can be eliminated
+     */
+    public void setRacing(boolean racing, float alpha, int minRuns) {
+        this.racing = racing;
+        this.racingAlpha = alpha;
+        this.racingMinRuns = minRuns;
+    }
+
+    /**
+     * @param intensification start the new individuals of each generation on a prefix of the
+     * course and only give the competitive configurations more runs
+     * @param initialRuns number of runs of the new individuals
+     */
+    public void setIntensification(boolean intensification, int initialRuns) {
+        this.intensification = intensification;
+        this.intensificationRuns = initialRuns;
+    }
+
+    /**
+     * Enables the prioritization of the waiting jobs.
+     * @param agingInterval seconds of waiting per additional priority, 0 disables aging
+     */
+    public void setJobPriorities(int agingInterval) {
+        priorities = new JobPriorities(api, metrics, agingInterval, tracker.getClock());
+    }
+
+    /**
+     * Enables the surrogate pre-screening of offspring and SLS neighbours.
+     * @param neighbours number of nearest evaluated configurations a prediction is based on
+     * @param maxSamples maximum number of evaluated configurations the model keeps
+     * @param oversampling number of candidates that are created per launched candidate
+     * @param minSamples number of evaluated configurations before the screening starts
+     */
+    public void setSurrogate(int neighbours, int maxSamples, int oversampling, int minSamples) {
+        this.surrogate = new Surrogate(pspace, neighbours, maxSamples);
+        this.surrogateOversampling = Math.max(1, oversampling);
+        this.surrogateMinSamples = minSamples;
+    }
+
+    /**
+     * Opens the run history of the experiment that stores all finished runs of the session.
+     * The history is then used for the costs of existing configurations, the ranking
+     * of existing configurations and the final report.
+     */
+    public void setRunHistory(File file) throws Exception {
+        history = new RunHistory(file, idExperiment);
+        System.out.println("opened run history " + file + " with " + history.size() + " runs");
+    }
+
+    /**
+     * Adds the finished runs of the group to the run history, also those of cancelled groups
+     * (e.g. aborted SLS neighbours) that finished before the group was killed. Killed runs
+     * are skipped, they would make their configuration look better than it is.
+     */
+    protected void record(JobGroup group) throws Exception {
+        if (history == null) return;
+        for (ExperimentResult result: group.getResults()) {
+            if (JobTracker.isFinished(result) && !tracker.isKilled(result)) {
+                history.add(result, group.getAccumulator().runCost(result));
+            }
+        }
+    }
+
+    /**
+     * Prints the best configurations of the run history with at least as many runs as the course has.
+     */
+    protected void reportHistory() throws Exception {
+        int courseLength = api.getCourseLength(idExperiment);
+        Map<Integer, CostAccumulator> accumulators = history.accumulate(costFunction, null);
+        List<Integer> ranking = RunHistory.rank(accumulators, courseLength);
+        System.out.println("run history: " + history.size() + " runs of " + accumulators.size() + " configurations, "
+                + ranking.size() + " of them ran the whole course");
+        for (int i = 0; i < Math.min(10, ranking.size()); i++) {
+            int idSolverConfig = ranking.get(i);
+            System.out.println((i + 1) + ". " + api.getSolverConfigName(idSolverConfig) + " (" + idSolverConfig
+                    + ") with cost " + accumulators.get(idSolverConfig).getCost());
+        }
+    }
+
+    /**
+     * @param pipelining breed and launch the next generation while the current one is
+     * still being evaluated (generational mode only, see OffspringPipeline)
+     */
+    public void setPipelining(boolean pipelining) {
+        this.pipeline = pipelining ? new OffspringPipeline() : null;
+    }
+
+    /**
+     * @param deduplication mutate new offspring again that are equal to an individual of the
+     * population or to another offspring before they are launched (see deduplicate())
+     * @param distance offspring within this genotype distance (see GenotypeIndex) count as duplicates as well
+     * @param retries maximum number of mutations of a duplicate
+     */
+    public void setDeduplication(boolean deduplication, float distance, int retries) {
+        this.deduplication = deduplication;
+        this.duplicateDistance = distance;
+        this.duplicateRetries = retries;
+        if (deduplication && genotypes == null) genotypes = new GenotypeIndex(pspace);
+    }
+
+    /**
+     * @param crowding finished offspring replace the nearest individual of a random window of the
+     * population instead of the worst one (steady-state mode only, see replaceNearest())
+     * @param window size of the window, 0 for the whole population
+     */
+    public void setCrowding(boolean crowding, int window) {
+        this.crowding = crowding;
+        this.crowdingWindow = window;
+        if (crowding && genotypes == null) genotypes = new GenotypeIndex(pspace);
+    }
+
+    /**
+     * Limits the cores this session uses to its share of the budget. Steady-state offspring and
+     * speculative offspring are launched while the share has free cores, the launches of a
+     * generation (new individuals, intensification and SLS neighbours) wait for free cores
+     * (see awaitCapacity()).
+     * @param weight share of the cores relative to the other sessions of the budget
+     */
+    public void setCoreBudget(CoreBudget budget, float weight) {
+        this.budget = budget;
+        budget.add(idExperiment, weight);
+    }
+
+    /**
+     * @param migration exchange of individuals with the other islands, null for a single population
+     */
+    public void setMigration(Migration migration) {
+        this.migration = migration;
+    }
+
+    /**
+     * Sends the best individuals of the evaluated population to the next island
+     * if a migration is due after this generation.
+     */
+    protected void emigrate(List<Individual> population) throws Exception {
+        if (migration != null && migration.isDue(generation)) migration.emigrate(population, generation);
+    }
+
+    /**
+     * @return the new individuals of the previous island, empty if there are none
+     */
+    protected List<Individual> immigrate() throws Exception {
+        if (migration == null) return Collections.emptyList();
+        return migration.immigrate(pspace);
+    }
+
+    /**
+     * Replaces random offspring with the received individuals.
+     */
+    protected void immigrate(List<Individual> offspring) throws Exception {
+        List<Integer> positions = new ArrayList<Integer>();
+        for (int i = 0; i < offspring.size(); i++) positions.add(i);
+        for (Individual immigrant: immigrate()) {
+            if (positions.isEmpty()) break;
+            offspring.set(positions.remove(rng.nextInt(positions.size())), immigrant);
+        }
+    }
+
+    protected boolean useSurrogate() {
+        return surrogate != null && surrogate.size() >= surrogateMinSamples;
+    }
+
+    /**
+     * @param file file the search state is checkpointed to, null to disable checkpoints
+     * @param resume continue the session of the checkpoint if the file exists
+     */
+    public void setCheckpointFile(File file, boolean resume) {
+        this.checkpointFile = file;
+        this.resume = resume;
+    }
+
+    /**
+     * Writes the current search state to the checkpoint file.
+     * @param population
+     * @param running individuals that are being evaluated and their jobs, can be null
+     * @param evaluated false if the population of the current generation is still being evaluated
+     */
+    protected void writeCheckpoint(List<Individual> population, Map<Individual, JobGroup> running, boolean evaluated) throws Exception {
+        if (checkpointFile == null) return;
+        Map<Individual, List<Integer>> jobs = new LinkedHashMap<Individual, List<Integer>>();
+        if (running != null) {
+            for (Map.Entry<Individual, JobGroup> entry: running.entrySet()) {
+                // killed jobs don't have to be waited for
+                if (!entry.getValue().isCancelled()) jobs.put(entry.getKey(), entry.getValue().getJobs());
+            }
+        }
+        new Checkpoint(idExperiment, steadyState, evaluated, generation, terminationCriterionHits,
+                generationAverage, finishedOffspring, globalBest, population, jobs,
+                tracker.getKilledJobs(), Checkpoint.rngState(rng)).save(checkpointFile);
+    }
+
+    /**
+     * Loads the checkpoint if the session should be resumed and restores the search
+     * state, the random number generator and the killed jobs of the job tracker.
+     * @return the checkpoint or null if a new session has to be started
+     */
+    protected Checkpoint loadCheckpoint() throws Exception {
+        if (!resume || checkpointFile == null) return null;
+        Checkpoint checkpoint = Checkpoint.load(checkpointFile, pspace, idExperiment);
+        if (checkpoint == null) {
+            System.out.println("no checkpoint found in " + checkpointFile + " - starting a new session");
+            return null;
+        }
+        if (checkpoint.isSteadyState() != steadyState) {
+            throw new Exception("The checkpoint " + checkpointFile + " was written " +
+                    (checkpoint.isSteadyState() ? "in" : "without") + " steady-state mode.");
+        }
+        generation = checkpoint.getGeneration();
+        terminationCriterionHits = checkpoint.getTerminationCriterionHits();
+        generationAverage = checkpoint.getGenerationAverage();
+        finishedOffspring = checkpoint.getFinishedOffspring();
+        globalBest = checkpoint.getGlobalBest();
+        tracker.addKilledJobs(checkpoint.getKilled());
+        checkpoint.restoreRng(rng);
+        System.out.println("resuming generation " + generation + " from " + checkpointFile + " - " +
+                checkpoint.getRunning().size() + " individuals are still being evaluated");
+        return checkpoint;
+    }
+
+    /**
+     * Tracks the jobs of the individuals of a checkpoint again. Jobs the backend doesn't know
+     * anymore (e.g. the running jobs of the local backend, which only keeps finished runs)
+     * are lost. The jobs of an individual cover a prefix of the course, so the course entries
+     * of the lost jobs are launched again (see trackCourse()).
+     */
+    protected Map<Individual, JobGroup> reattach(Map<Individual, List<Integer>> running) throws Exception {
+        List<Integer> ids = new ArrayList<Integer>();
+        for (List<Integer> jobs: running.values()) ids.addAll(jobs);
+        Map<Integer, ExperimentResult> known = ids.isEmpty() ? new HashMap<Integer, ExperimentResult>() : api.getJobsByIDs(ids);
+        Map<Individual, JobGroup> groups = new LinkedHashMap<Individual, JobGroup>();
+        for (Map.Entry<Individual, List<Integer>> entry: running.entrySet()) {
+            int lost = 0;
+            for (Integer idJob: entry.getValue()) {
+                if (!known.containsKey(idJob)) lost++;
+            }
+            Individual ind = entry.getKey();
+            if (lost > 0) {
+                if (ind.getIdSolverConfiguration() == 0) {
+                    throw new IllegalStateException("The checkpoint has jobs of " + ind.getName() + " without solver configuration.");
+                }
+                System.out.println("relaunching " + lost + " lost jobs of " + ind.getName());
+                groups.put(ind, trackCourse(ind, entry.getValue().size()));
+            } else {
+                groups.put(ind, track(entry.getValue()));
+            }
+        }
+        return groups;
+    }
+
     protected List<Individual> initializePopulation(int size) throws Exception {
         List<Individual> population = new ArrayList<Individual>();
         if (useExistingConfigs) {
-            List<Integer> bestConfigs = api.getBestConfigurations(idExperiment, costFunction, size);
+            List<Integer> bestConfigs;
+            Map<Integer, CostAccumulator> historyCosts = null;
+            if (history != null && history.size() > 0) {
+                // rank the configurations of earlier sessions on their recorded runs, partially
+                // evaluated configurations (e.g. eliminated by racing) would look too good
+                historyCosts = history.accumulate(costFunction, null);
+                bestConfigs = RunHistory.rank(historyCosts, api.getCourseLength(idExperiment));
+                bestConfigs = bestConfigs.subList(0, Math.min(size, bestConfigs.size()));
+            } else {
+                bestConfigs = api.getBestConfigurations(idExperiment, costFunction, size);
+            }
             for (Integer idSolverConfig: bestConfigs) {
                 Individual ind = new Individual(api.getParameterConfiguration(idExperiment, idSolverConfig));
-                ind.setCost(api.getSolverConfigurationCost(idSolverConfig));
+                ind.setCost(historyCosts != null ? historyCosts.get(idSolverConfig).getCost() : api.getSolverConfigurationCost(idSolverConfig));
                 ind.setIdSolverConfiguration(idSolverConfig);
                 ind.setName(api.getSolverConfigName(idSolverConfig));
+                cacheIndividual(ind, historyCosts != null ? historyCosts.get(idSolverConfig).getNumRuns() : 0);
                 System.out.println("using existing config " + ind.getConfig() + " with cost " + ind.getCost());
                 population.add(ind);
             }
@@ -183,167 +920,605 @@ public class GAConfigurator {
     }
 
     protected void evaluatePopulation(List<Individual> population, int generation) throws Exception {
-        List<Integer> jobs = new ArrayList<Integer>();
-        int courseLength = api.getCourseLength(idExperiment);
-        int numJobs = Math.min(generation * courseLength / 2, courseLength);
+        evaluatePopulation(population, generation, new LinkedHashMap<Individual, JobGroup>());
+    }
+    
+    /**
+     * Evaluates the population. Individuals that already have a solver configuration
+     * aren't launched again.
+     * @param groups jobs of individuals that are still being evaluated, e.g. of a resumed session.
+     * The groups of the launched individuals are added.
+     */
+    protected void evaluatePopulation(List<Individual> population, int generation, Map<Individual, JobGroup> groups) throws Exception {
+        long start = System.nanoTime();
+        int targetRuns = generationRuns(generation);
+        // with intensification the new individuals start on a prefix of the runs of the generation
+        int numJobs = initialRuns(generation);
+        List<Individual> launch = new ArrayList<Individual>();
+        // existing configurations without cost, e.g. speculative offspring that were abandoned before their runs finished,
+        // they are evaluated on the same course entries as the launched individuals
+        List<Individual> relaunch = new ArrayList<Individual>();
+        // individuals that are equal to an individual that is launched in this generation
+        Map<String, Individual> launchByKey = new HashMap<String, Individual>();
+        Map<Individual, Individual> copies = new LinkedHashMap<Individual, Individual>();
         for (Individual ind : population) {
             if (ind.getIdSolverConfiguration() != 0) continue;
             // check if an equal solver config already exists and use its results
             // the cost of this existing config has to be set at the end because it could
             // be that two equal configs were created but not evaluated
-            int idSolverConfig = api.exists(idExperiment, ind.getConfig());
-            if (idSolverConfig != 0) {
-                ind.setIdSolverConfiguration(idSolverConfig);
-                ind.setName(api.getSolverConfigName(idSolverConfig));
+            String key = FitnessCache.canonicalKey(ind.getConfig());
+            metrics.add("lookup.total", 1);
+            if (launchByKey.containsKey(key)) {
+                metrics.add("lookup.duplicates", 1);
+                copies.put(ind, launchByKey.get(key));
+                continue;
+            }
+            FitnessCache.Entry entry = lookup(ind.getConfig());
+            if (entry.getIdSolverConfiguration() != 0) {
+                metrics.add("lookup.duplicates", 1);
+                ind.setIdSolverConfiguration(entry.getIdSolverConfiguration());
+                ind.setName(entry.getName());
+                if (!isRunning(groups, ind.getIdSolverConfiguration()) && lookupCost(ind, numJobs) == null) {
+                    relaunch.add(ind);
+                    launchByKey.put(key, ind);
+                }
             } else { // otherwise create a new solver configuration and launch jobs
-                String name = "Gen " + generation + " " + api.getCanonicalName(idExperiment, ind.getConfig());
-                ind.setIdSolverConfiguration(api.createSolverConfig(idExperiment, ind.getConfig(), name));
-                ind.setCost(null);
-                ind.setName(name);
-                int[] cpuTimeLimits = new int[numJobs];
-                for (int i = 0; i < numJobs; i++) cpuTimeLimits[i] = jobCPUTimeLimit;
-                System.out.println("launching " + numJobs + " jobs");
-                jobs.addAll(api.launchJob(idExperiment, ind.getIdSolverConfiguration(), cpuTimeLimits, numJobs, rng));
+                launch.add(ind);
+                launchByKey.put(key, ind);
             }
         }
-        
-        Map<Integer, ExperimentResult> results = new HashMap<Integer, ExperimentResult>();
-        while (true) {
-            Thread.sleep(3000);
-            boolean all_done = true;
-            results.clear();
-            results = api.getJobsByIDs(jobs);
-            for (ExperimentResult result: results.values()) {
-                all_done &= (result.getStatus().getStatusCode() >= 1 ||
-                             result.getStatus().getStatusCode() < -1);
+        // with a core budget the individuals are launched as the share of the session has room for their jobs
+        for (int next = 0; next < launch.size(); ) {
+            int end = launch.size();
+            if (budget != null) {
+                // like offspring in steady-state mode, individuals are launched while there are free cores
+                awaitCapacity();
+                int numJobsPerIndividual = Math.max(1, numJobs);
+                end = Math.min(end, next + Math.max(1, (getFreeCapacity() + numJobsPerIndividual - 1) / numJobsPerIndividual));
             }
-            if (all_done) break;
-            System.gc();
+            for (Map.Entry<Individual, List<Integer>> launched: launchIndividuals(launch.subList(next, end), generation, numJobs).entrySet()) {
+                groups.put(launched.getKey(), track(launched.getValue()));
+            }
+            next = end;
+        }
+        if (!relaunch.isEmpty()) {
+            System.out.println("evaluating " + relaunch.size() + " existing configurations without cost on the first " + numJobs + " runs");
+            for (Individual ind: relaunch) {
+                awaitCapacity();
+                groups.put(ind, trackCourse(ind, numJobs));
+            }
+        }
+        for (Map.Entry<Individual, Individual> copy: copies.entrySet()) {
+            copy.getKey().setIdSolverConfiguration(copy.getValue().getIdSolverConfiguration());
+            copy.getKey().setName(copy.getValue().getName());
         }
         
-        Map<Integer, List<ExperimentResult>> resultsBySolverConfig = new HashMap<Integer, List<ExperimentResult>>();
-        for (ExperimentResult result: results.values()) {
-        	if (!resultsBySolverConfig.containsKey(result.getSolverConfigId())) {
-        		resultsBySolverConfig.put(result.getSolverConfigId(), new ArrayList<ExperimentResult>());
-        	}
-        	resultsBySolverConfig.get(result.getSolverConfigId()).add(result);
+        if (pipeline != null) pipeline.setRunning(groups);
+        writeCheckpoint(population, groups, false);
+        updatePriorities(population, groups);
+        
+        if (racing) {
+            long raceStart = System.nanoTime();
+            race(population, groups);
+            metrics.timeSince("phase.race", raceStart);
         }
         
-        for (Integer idSolverConfig: resultsBySolverConfig.keySet()) {
-            float cost = costFunction.calculateCost(resultsBySolverConfig.get(idSolverConfig));
+        await(groups.values(), population, groups);
+        // the costs were accumulated while the jobs finished
+        for (Map.Entry<Individual, JobGroup> entry: groups.entrySet()) {
+            JobGroup group = entry.getValue();
+            record(group);
+            if (group.isCancelled()) continue;
+            group.get();
+            int idSolverConfig = entry.getKey().getIdSolverConfiguration();
+            float cost = group.getCost();
             api.updateSolverConfigurationCost(idSolverConfig, cost, costFunction);
             
             for (Individual ind: population) {
                 if (ind.getIdSolverConfiguration() == idSolverConfig) {
                     ind.setCost(cost);
+                    cacheIndividual(ind, group.getNumFinished());
                 }
             }
         }
         
         for (Individual ind: population) {
             if (ind.getCost() == null) {
-                ind.setCost(api.getSolverConfigurationCost(ind.getIdSolverConfiguration()));
+                ind.setCost(lookupCost(ind, numJobs));
             }
         }
+        if (intensification) intensify(population, targetRuns);
+        saveFitnessCache();
+        metrics.timeSince("phase.evaluate", start);
     }
     
-    protected Individual tournamentSelect(List<Individual> population) {
-        List<Integer> tournament = new ArrayList<Integer>();
-        List<Individual> tournamentIndividuals = new ArrayList<Individual>();
-        for (int i = 0; i < tournamentSize; i++) {
-            int ix;
-            do {
-                ix = rng.nextInt(populationSize);
-            } while (tournament.contains(ix));
-            tournament.add(ix);
-            tournamentIndividuals.add(population.get(ix));
-        }
-        
-        Collections.sort(tournamentIndividuals);
-        return tournamentIndividuals.get(0);
+    /**
+     * @return number of runs of the individuals of the generation: half the course
+     * in the first generation, the whole course afterwards
+     */
+    protected int generationRuns(int generation) throws Exception {
+        int courseLength = api.getCourseLength(idExperiment);
+        return Math.min(generation * courseLength / 2, courseLength);
     }
     
-    protected boolean terminationCriterion(Float generationAverage, List<Individual> population) {
-        if (generationAverage == null) return false;
-        float sum = 0;
-        for (int i = 0; i < populationSize; i++) {
-            sum += population.get(i).getCost();
+    /**
+     * @return number of runs new individuals of the generation are launched with
+     */
+    protected int initialRuns(int generation) throws Exception {
+        int runs = generationRuns(generation);
+        return intensification ? Math.min(intensificationRuns, runs) : runs;
+    }
+    
+    /**
+     * Tracks the runs of an existing solver configuration on the first numJobs course entries,
+     * e.g. of an abandoned speculative child that turns up again. Its finished runs on these
+     * entries are reused and its unfinished ones are tracked, the entries without run or with
+     * a killed run are launched again. The configuration is therefore evaluated on the same
+     * instance/seed pairs as the new individuals of its generation.
+     */
+    protected JobGroup trackCourse(Individual ind, int numJobs) throws Exception {
+        List<ExperimentResult> runs = api.getCourseRuns(idExperiment, ind.getIdSolverConfiguration(), numJobs);
+        Integer[] jobs = new Integer[numJobs];
+        List<ExperimentResult> finished = new ArrayList<ExperimentResult>();
+        List<Integer> missing = new ArrayList<Integer>();
+        for (int i = 0; i < numJobs; i++) {
+            ExperimentResult result = runs.get(i);
+            if (result == null || tracker.isKilled(result)) {
+                missing.add(i);
+                continue;
+            }
+            jobs[i] = result.getId();
+            if (JobTracker.isFinished(result)) finished.add(result);
         }
-        float avg = sum / population.size();
-        
-        if (avg > (generationAverage * 0.95)) {
-            // if the current average is not better than 0.95 times the old
-            // average we haven't made significant progress -> terminate
-            terminationCriterionHits++;
-            if (terminationCriterionHits >= maxTerminationCriterionHits) return true;
+        if (!missing.isEmpty()) {
+            int[] courseIndices = new int[missing.size()];
+            int[] cpuTimeLimits = new int[missing.size()];
+            for (int i = 0; i < missing.size(); i++) {
+                courseIndices[i] = missing.get(i);
+                cpuTimeLimits[i] = jobCPUTimeLimit;
+            }
+            List<Integer> launched = api.launchCourseJobs(idExperiment, ind.getIdSolverConfiguration(), cpuTimeLimits, courseIndices);
+            for (int i = 0; i < courseIndices.length; i++) jobs[courseIndices[i]] = launched.get(i);
+        }
+        return track(Arrays.asList(jobs), finished, JobPriorities.OFFSPRING);
+    }
+    
+    private static boolean isRunning(Map<Individual, JobGroup> groups, int idSolverConfig) {
+        for (Individual ind: groups.keySet()) {
+            if (ind.getIdSolverConfiguration() == idSolverConfig) return true;
         }
         return false;
     }
-
-    public void evolve() throws Exception {
-        Individual globalBest = null;
-        Float generationAverage = null;
-        int generation = 1;
-        
-        List<Individual> population = initializePopulation(populationSize);
-        evaluatePopulation(population, generation);
+    
+    /**
+     * Compares the solver configurations of the population on the same instance/seed pairs
+     * and tops up the competitive ones with the runs they are missing, up to targetRuns runs.
+     *
+     * The incumbent is the configuration with the most finished leading course runs and
+     * the lowest cost on them, it is topped up to targetRuns runs first. Every other
+     * configuration is compared with the cost of the incumbent on the same number of leading
+     * runs: if it isn't worse, its number of runs is doubled and it is compared again,
+     * otherwise it is dropped. Configurations with unfinished (e.g. killed) runs can't be
+     * topped up and are dropped as well. Dropped configurations keep the cost of their runs
+     * in the database and the fitness cache, in the population they are censored and cost
+     * at least as much as the incumbent.
+     */
+    protected void intensify(List<Individual> population, int targetRuns) throws Exception {
+        long start = System.nanoTime();
+        // finished leading course runs of each configuration
+        Map<Integer, List<ExperimentResult>> runs = new LinkedHashMap<Integer, List<ExperimentResult>>();
+        Set<Integer> dropped = new HashSet<Integer>();
+        Set<Integer> toppedUp = new HashSet<Integer>();
+        for (Individual ind: population) {
+            int idSolverConfig = ind.getIdSolverConfiguration();
+            if (idSolverConfig == 0 || runs.containsKey(idSolverConfig)) continue;
+            List<ExperimentResult> all = api.getRuns(idExperiment, idSolverConfig);
+            List<ExperimentResult> prefix = new ArrayList<ExperimentResult>();
+            for (ExperimentResult result: all) {
+                if (prefix.size() == targetRuns || !JobTracker.isFinished(result) || tracker.isKilled(result)) break;
+                prefix.add(result);
+            }
+            runs.put(idSolverConfig, prefix);
+            if (prefix.isEmpty() || prefix.size() < Math.min(all.size(), targetRuns)) dropped.add(idSolverConfig);
+        }
         
-        while (!terminationCriterion(generationAverage, population)) {
-            // keep track of global best individual
-            float sum = 0;
-            for (int i = 0; i < populationSize; i++) {
-                sum += population.get(i).getCost();
-                if (globalBest == null || population.get(i).getCost() < globalBest.getCost()) {
-                    globalBest = new Individual(population.get(i));
+        Integer incumbent;
+        while (true) {
+            incumbent = null;
+            for (Map.Entry<Integer, List<ExperimentResult>> e: runs.entrySet()) {
+                if (dropped.contains(e.getKey())) continue;
+                if (incumbent == null) {
+                    incumbent = e.getKey();
+                    continue;
                 }
+                List<ExperimentResult> best = runs.get(incumbent);
+                int n = e.getValue().size();
+                if (n > best.size() || (n == best.size() && cost(e.getValue(), n) < cost(best, n))) incumbent = e.getKey();
             }
-            // update generationAverage
-            generationAverage = sum / populationSize;
+            if (incumbent == null) break;
             
-            // print some information
-            System.out.println("---------\nGeneration " + generation + " - global best: " + globalBest.getName() +
-                    " with average time " + globalBest.getCost() +
-                    " - generation avg: " + generationAverage);
-            
-            
-            // prepare mating pool (parent selection)
-            List<Individual> matingPool = new ArrayList<Individual>();
-            for (int i = 0; i < populationSize; i++) {
-                matingPool.add(tournamentSelect(population));
+            List<ExperimentResult> incumbentRuns = runs.get(incumbent);
+            Map<Integer, Integer> topUps = new LinkedHashMap<Integer, Integer>();
+            if (incumbentRuns.size() < targetRuns) {
+                topUps.put(incumbent, targetRuns - incumbentRuns.size());
+            } else {
+                for (Map.Entry<Integer, List<ExperimentResult>> e: runs.entrySet()) {
+                    int n = e.getValue().size();
+                    if (dropped.contains(e.getKey()) || n >= targetRuns) continue;
+                    if (cost(e.getValue(), n) <= cost(incumbentRuns, n)) {
+                        topUps.put(e.getKey(), Math.min(2 * n, targetRuns) - n);
+                    } else {
+                        dropped.add(e.getKey());
+                        metrics.add("intensify.dropped", 1);
+                    }
+                }
             }
+            if (topUps.isEmpty()) break;
             
-            List<Individual> newPopulation = new ArrayList<Individual>();
-            // parent recombination
-            for (int i = 0; i < populationSize; i += 2) {
-                if (rng.nextFloat() < crossoverProbability) {
-                    Individual parent1 = matingPool.get(i);
-                    Individual parent2 = matingPool.get((i+1) % populationSize); // wrap around
-                    Pair<ParameterConfiguration, ParameterConfiguration> children;
-                    if (use2PointCrossover) {
-                        children = pspace.crossover2Point(parent1.getConfig(), parent2.getConfig(), rng);
-                    } else {
-                        children = pspace.crossover(parent1.getConfig(), parent2.getConfig(), rng);
+            System.out.println("intensification: topping up " + topUps.size() + " configurations, incumbent has "
+                    + incumbentRuns.size() + " runs");
+            Map<Integer, JobGroup> groups = new LinkedHashMap<Integer, JobGroup>();
+            for (Map.Entry<Integer, Integer> e: topUps.entrySet()) {
+                int[] cpuTimeLimits = new int[e.getValue()];
+                for (int i = 0; i < cpuTimeLimits.length; i++) cpuTimeLimits[i] = jobCPUTimeLimit;
+                awaitCapacity();
+                groups.put(e.getKey(), track(api.launchJob(idExperiment, e.getKey(), cpuTimeLimits, cpuTimeLimits.length, rng),
+                        e.getKey().equals(incumbent) ? JobPriorities.INCUMBENT : JobPriorities.CHALLENGER));
+                metrics.add("intensify.runs", cpuTimeLimits.length);
+            }
+            await(groups.values(), population, null);
+            for (Map.Entry<Integer, JobGroup> e: groups.entrySet()) {
+                // the new runs follow the existing ones on the course
+                runs.get(e.getKey()).addAll(e.getValue().get());
+                record(e.getValue());
+                toppedUp.add(e.getKey());
+            }
+        }
+        
+        if (incumbent != null) {
+            float incumbentCost = cost(runs.get(incumbent), runs.get(incumbent).size());
+            for (Map.Entry<Integer, List<ExperimentResult>> e: runs.entrySet()) {
+                int idSolverConfig = e.getKey();
+                int n = e.getValue().size();
+                float cost = cost(e.getValue(), n);
+                if (toppedUp.contains(idSolverConfig)) api.updateSolverConfigurationCost(idSolverConfig, cost, costFunction);
+                for (Individual ind: population) {
+                    if (ind.getIdSolverConfiguration() != idSolverConfig) continue;
+                    ind.setCost(cost);
+                    ind.setCensored(false);
+                    cacheIndividual(ind, n);
+                    if (dropped.contains(idSolverConfig) || n < targetRuns) {
+                        ind.setCost(Math.max(cost, incumbentCost));
+                        ind.setCensored(true);
                     }
-                    newPopulation.add(new Individual(children.getFirst()));
-                    newPopulation.add(new Individual(children.getSecond()));
                 }
-                else {
-                    newPopulation.add(matingPool.get(i));
-                    newPopulation.add(matingPool.get((i+1) % populationSize));
+            }
+        }
+        metrics.timeSince("phase.intensify", start);
+    }
+    
+    /**
+     * @return cost of the first n runs
+     */
+    private float cost(List<ExperimentResult> runs, int n) {
+        CostAccumulator accumulator = CostAccumulator.create(costFunction);
+        for (int i = 0; i < n; i++) accumulator.add(runs.get(i));
+        return accumulator.getCost();
+    }
+    
+    /**
+     * Races the given individuals of the population until all of them are either finished or eliminated.
+     * The jobs of eliminated individuals are killed and their cost is set to the
+     * censored cost of the runs that were started. The censored cost is only a lower bound
+     * of an individual that is significantly worse than the others, so in the population it
+     * costs at least as much as the worst finished individual of the race at the end. It isn't
+     * stored in the database, the fitness cache or the surrogate. Offspring equal to an
+     * eliminated individual are evaluated again on the same course entries: the finished runs
+     * are reused and the killed ones are launched again (see trackCourse()). The killed jobs
+     * are checkpointed, so this also holds in a resumed session.
+     */
+    protected void race(List<Individual> population, Map<Individual, JobGroup> groups) throws Exception {
+        Race race = new Race(costFunction, racingAlpha, racingMinRuns);
+        for (Map.Entry<Individual, JobGroup> entry: groups.entrySet()) {
+            race.add(entry.getKey(), entry.getValue());
+        }
+        while (true) {
+            boolean all_done = true;
+            for (JobGroup group: groups.values()) all_done &= group.isDone();
+            if (all_done) break;
+            tracker.awaitUpdate(3000);
+            updatePriorities(population, groups);
+            speculate();
+            
+            for (Individual ind: race.update()) {
+                JobGroup group = groups.get(ind);
+                // finished individuals get their real cost
+                if (group.isDone()) continue;
+                group.kill();
+                ind.setCost(Race.censoredCost(group));
+                ind.setCensored(true);
+                System.out.println("racing eliminated " + ind.getName() + " with censored cost " + ind.getCost());
+                writeCheckpoint(population, groups, false);
+            }
+        }
+        
+        Float worst = null;
+        for (JobGroup group: groups.values()) {
+            if (group.isCancelled()) continue;
+            float cost = group.getCost();
+            if (worst == null || cost > worst) worst = cost;
+        }
+        for (Map.Entry<Individual, JobGroup> entry: groups.entrySet()) {
+            if (!entry.getValue().isCancelled()) continue;
+            Individual eliminated = entry.getKey();
+            float cost = worst == null ? eliminated.getCost() : Math.max(eliminated.getCost(), worst);
+            // copies of the eliminated individual in the population share its jobs
+            for (Individual ind: population) {
+                if (ind.getIdSolverConfiguration() != eliminated.getIdSolverConfiguration()) continue;
+                ind.setCost(cost);
+                ind.setCensored(true);
+            }
+        }
+    }
+    
+    protected JobGroup track(List<Integer> jobs) {
+        return track(jobs, JobPriorities.OFFSPRING);
+    }
+    
+    /**
+     * Tracks the jobs with an accumulator of the cost function.
+     * @param priority base priority of the jobs, see JobPriorities
+     */
+    protected JobGroup track(List<Integer> jobs, int priority) {
+        return track(jobs, Collections.<ExperimentResult>emptyList(), priority);
+    }
+    
+    /**
+     * Tracks the jobs like track(List, int), the given results of finished jobs among them
+     * are accumulated right away.
+     */
+    protected JobGroup track(List<Integer> jobs, List<ExperimentResult> finished, int priority) {
+        JobGroup group = tracker.track(jobs, finished, null, CostAccumulator.create(costFunction), metrics);
+        if (priorities != null) priorities.setPriority(group, priority);
+        return group;
+    }
+    
+    /**
+     * Waits until all groups are done, the job priorities are updated meanwhile.
+     * @param running see updatePriorities, can be null
+     */
+    protected void await(Collection<JobGroup> groups, List<Individual> population, Map<Individual, JobGroup> running) throws Exception {
+        updatePriorities(population, running);
+        while (true) {
+            boolean all_done = true;
+            for (JobGroup group: groups) all_done &= group.isDone();
+            if (all_done) break;
+            tracker.awaitUpdate(3000);
+            updatePriorities(population, running);
+            speculate();
+        }
+    }
+    
+    /**
+     * Lowers the priority of the running individuals that can't win anymore (see canStillWin)
+     * and sends all changed priorities to the backend in one batch.
+     * @param running the running individuals of the population, or the running offspring in
+     * steady-state mode, can be null
+     */
+    protected void updatePriorities(List<Individual> population, Map<Individual, JobGroup> running) throws Exception {
+        if (priorities == null) return;
+        if (running != null) {
+            for (Map.Entry<Individual, JobGroup> entry: running.entrySet()) {
+                if (entry.getValue().isDone()) continue;
+                if (!canStillWin(population, running, entry.getKey())) priorities.setPriority(entry.getValue(), JobPriorities.LOW);
+            }
+        }
+        priorities.update();
+    }
+    
+    /**
+     * The cost of a running individual is at least the optimistic bound of its jobs, the
+     * cost of the other running individuals at most their pessimistic bound.
+     * In steady-state mode an offspring has to be better than the worst individual of the
+     * population, otherwise an individual has to be better than at least tournamentSize - 1
+     * individuals of the population to win a tournament.
+     */
+    protected boolean canStillWin(List<Individual> population, Map<Individual, JobGroup> running, Individual ind) {
+        float lowerBound = running.get(ind).getLowerBound();
+        if (steadyState) {
+            for (Individual other: population) {
+                if (other.getCost() == null || other.getCost() > lowerBound) return true;
+            }
+            return false;
+        }
+        int better = 0;
+        for (Individual other: population) {
+            if (other == ind) continue;
+            JobGroup group = running.get(other);
+            float cost;
+            if (group != null && !group.isCancelled()) cost = group.isDone() ? group.getCost() : group.getUpperBound();
+            else if (other.getCost() != null) cost = other.getCost();
+            else continue;
+            if (cost < lowerBound) better++;
+        }
+        return better < population.size() - tournamentSize + 1;
+    }
+    
+    /**
+     * Creates a new solver configuration for the individual and launches
+     * the first numJobs jobs of the instance course.
+     * @return the IDs of the launched jobs
+     */
+    protected List<Integer> launchIndividual(Individual ind, int generation, int numJobs) throws Exception {
+        return launchIndividuals(Collections.singletonList(ind), generation, numJobs).get(ind);
+    }
+    
+    /**
+     * Creates new solver configurations for the individuals and launches
+     * the first numJobs jobs of the instance course of each of them, all in one batch.
+     * @return the IDs of the launched jobs of each individual
+     */
+    protected Map<Individual, List<Integer>> launchIndividuals(List<Individual> individuals, int generation, int numJobs) throws Exception {
+        Map<Individual, List<Integer>> jobs = new LinkedHashMap<Individual, List<Integer>>();
+        if (individuals.isEmpty()) return jobs;
+        int[] cpuTimeLimits = new int[numJobs];
+        for (int i = 0; i < numJobs; i++) cpuTimeLimits[i] = jobCPUTimeLimit;
+        LaunchBatch batch = new LaunchBatch();
+        for (Individual ind: individuals) batch.add(ind.getConfig(), (migration == null ? "" : "Island " + migration.getIsland() + " ") + "Gen " + generation + " ", cpuTimeLimits);
+        System.out.println("launching " + numJobs + " jobs for each of " + individuals.size() + " individuals");
+        api.launchBatch(idExperiment, batch, rng);
+        for (int i = 0; i < individuals.size(); i++) {
+            Individual ind = individuals.get(i);
+            LaunchBatch.Entry entry = batch.getEntries().get(i);
+            ind.setIdSolverConfiguration(entry.getIdSolverConfig());
+            ind.setCost(null);
+            ind.setCensored(false);
+            ind.setName(entry.getName());
+            cacheIndividual(ind, 0);
+            if (history != null) history.addConfiguration(ind.getIdSolverConfiguration(), ind.getConfig());
+            jobs.put(ind, entry.getJobs());
+        }
+        return jobs;
+    }
+    
+    protected Individual tournamentSelect(List<Individual> population) {
+        return tournamentWinner(population, drawTournament(), false);
+    }
+    
+    /**
+     * @param provisional use the provisional costs of individuals that are still being evaluated
+     * (see provisionalCost), otherwise their costs
+     * @return the individual of lowest cost among the given positions of the population (the first
+     * drawn one among equal costs), null if one of them doesn't have a (provisional) cost yet
+     */
+    protected Individual tournamentWinner(List<Individual> population, int[] tournament, boolean provisional) {
+        Individual winner = null;
+        Float best = null;
+        for (int ix: tournament) {
+            Individual ind = population.get(ix);
+            Float cost = provisional ? provisionalCost(ind) : ind.getCost();
+            if (cost == null) return null;
+            if (winner == null || cost.compareTo(best) < 0) {
+                winner = ind;
+                best = cost;
+            }
+        }
+        return winner;
+    }
+    
+    /**
+     * @return the cost of the individual, or the cost of the finished runs while it is
+     * being evaluated, null if none of its runs finished yet. Individuals that are equal to
+     * existing configurations only get their cost at the end of the evaluation.
+     */
+    protected Float provisionalCost(Individual ind) {
+        if (ind.getCost() != null) return ind.getCost();
+        JobGroup group = pipeline.getRunning(ind);
+        if (group == null || group.getNumFinished() == 0) return null;
+        return group.getCost();
+    }
+    
+    /**
+     * @return tournamentSize distinct random positions of the population
+     */
+    protected int[] drawTournament() {
+        List<Integer> tournament = new ArrayList<Integer>();
+        for (int i = 0; i < tournamentSize; i++) {
+            int ix;
+            do {
+                ix = rng.nextInt(populationSize);
+            } while (tournament.contains(ix));
+            tournament.add(ix);
+        }
+        int[] positions = new int[tournamentSize];
+        for (int i = 0; i < tournamentSize; i++) positions[i] = tournament.get(i);
+        return positions;
+    }
+    
+    protected boolean terminationCriterion(Float generationAverage, List<Individual> population) {
+        if (generationAverage == null) return false;
+        float sum = 0;
+        for (int i = 0; i < populationSize; i++) {
+            sum += population.get(i).getCost();
+        }
+        float avg = sum / population.size();
+        
+        if (avg > (generationAverage * 0.95)) {
+            // if the current average is not better than 0.95 times the old
+            // average we haven't made significant progress -> terminate
+            terminationCriterionHits++;
+            if (terminationCriterionHits >= maxTerminationCriterionHits) return true;
+        }
+        return false;
+    }
+
+    public void evolve() throws Exception {
+        List<Individual> population;
+        Checkpoint checkpoint = loadCheckpoint();
+        if (checkpoint == null) {
+            population = initializePopulation(populationSize);
+            if (pipeline != null) pipeline.start(population);
+            evaluatePopulation(population, generation);
+            writeCheckpoint(population, null, true);
+        } else {
+            population = checkpoint.getPopulation();
+            if (!checkpoint.isEvaluated()) {
+                // finish the evaluation that was interrupted
+                if (pipeline != null) pipeline.start(population);
+                evaluatePopulation(population, generation, reattach(checkpoint.getRunning()));
+                if (generation > 1) SLSImprove(population);
+                writeCheckpoint(population, null, true);
+            }
+        }
+        
+        while (!terminationCriterion(generationAverage, population)) {
+            // keep track of global best individual
+            float sum = 0;
+            for (int i = 0; i < populationSize; i++) {
+                sum += population.get(i).getCost();
+                if (globalBest == null || population.get(i).getCost() < globalBest.getCost()) {
+                    globalBest = new Individual(population.get(i));
                 }
             }
+            // update generationAverage
+            generationAverage = sum / populationSize;
+            
+            // print some information
+            System.out.println("---------\nGeneration " + generation + " - global best: " + globalBest.getName() +
+                    " with average time " + globalBest.getCost() +
+                    " - generation avg: " + generationAverage);
+            recordMetrics(population);
+            emigrate(population);
             
-            // mutation
+            long start = System.nanoTime();
+            List<Individual> newPopulation = pipeline == null || pipeline.getPopulation() == null
+                    ? breed(population) : breedPipelined(population);
+            metrics.timeSince("phase.breed", start);
+            if (useSurrogate()) {
+                start = System.nanoTime();
+                newPopulation = screenOffspring(population, newPopulation);
+                metrics.timeSince("phase.surrogate", start);
+            }
+            if (deduplication) {
+                start = System.nanoTime();
+                deduplicate(population, newPopulation);
+                metrics.timeSince("phase.deduplicate", start);
+            }
+            immigrate(newPopulation);
+            // launched speculative offspring that made it into the new generation keep their jobs
+            Map<Individual, JobGroup> launched = finishPipeline(newPopulation);
             for (int i = 0; i < populationSize; i++) {
-                pspace.mutateParameterConfiguration(rng, newPopulation.get(i).getConfig(), mutationStandardDeviationFactor, mutationProbability);
                 // replace old population
                 population.set(i, newPopulation.get(i));
             }
             
             generation += 1;
-            evaluatePopulation(population, generation);
+            if (pipeline != null) pipeline.start(population);
+            evaluatePopulation(population, generation, launched);
             SLSImprove(population);
+            writeCheckpoint(population, null, true);
         }
+        finishPipeline(null);
         
         
         // print some information about the final population
@@ -359,81 +1534,738 @@ public class GAConfigurator {
         System.out.println("Generation " + generation + " - global best: " + globalBest.getName() +
                 " with average time " + globalBest.getCost() +
                 " - generation avg: " + generationAverage + "----------------------\n----------------------");
-
+        recordMetrics(population);
     }
     
-    public void SLSImprove(Individual individual, int steps) throws Exception {
-        System.out.println("running SLS depth " + (3 - steps) + " for " + individual.getName());
-        int maxNeighbours = 5;
-        if (steps <= 0) return;
-        List<ParameterConfiguration> nbh = pspace.getNeighbourhood(individual.getConfig());
-        if (nbh.size() == 0) return;
-        for (int i = 0; i < maxNeighbours; i++) {
-            System.out.println("trying neighbour...");
-            ParameterConfiguration nbr = nbh.get(rng.nextInt(nbh.size()));
-            int count = 1;
-            while (count < nbh.size() && api.exists(idExperiment, nbr) != 0) {
-                nbr = nbh.get(rng.nextInt(nbh.size()));
+    /**
+     * Creates the next generation: parent selection, recombination with the
+     * crossover probability (otherwise the parents are copied) and mutation.
+     */
+    protected List<Individual> breed(List<Individual> population) {
+        // prepare mating pool (parent selection)
+        List<Individual> matingPool = new ArrayList<Individual>();
+        for (int i = 0; i < populationSize; i++) {
+            matingPool.add(tournamentSelect(population));
+        }
+        
+        List<Individual> newPopulation = new ArrayList<Individual>();
+        // parent recombination
+        for (int i = 0; i < populationSize; i += 2) {
+            if (rng.nextFloat() < crossoverProbability) {
+                Individual parent1 = matingPool.get(i);
+                Individual parent2 = matingPool.get((i+1) % populationSize); // wrap around
+                Pair<ParameterConfiguration, ParameterConfiguration> children;
+                if (use2PointCrossover) {
+                    children = pspace.crossover2Point(parent1.getConfig(), parent2.getConfig(), rng);
+                } else {
+                    children = pspace.crossover(parent1.getConfig(), parent2.getConfig(), rng);
+                }
+                newPopulation.add(new Individual(children.getFirst()));
+                newPopulation.add(new Individual(children.getSecond()));
             }
-
-            int idSolverConfig = api.createSolverConfig(idExperiment, nbr, api.getCanonicalName(idExperiment, nbr));
-            int numJobs = api.getCourseLength(idExperiment);
-            List<Integer> jobs = new ArrayList<Integer>();
-            int[] cpuTimeLimits = new int[numJobs];
-            for (int j = 0; j < numJobs; j++) cpuTimeLimits[i] = jobCPUTimeLimit;
-            jobs.addAll(api.launchJob(idExperiment, idSolverConfig, cpuTimeLimits, numJobs, rng));
-
-            boolean better = true;
-            Map<Integer, ExperimentResult> results;
-
-            while (true) {
-                Thread.sleep(1000);
-                results = api.getJobsByIDs(jobs);
-                List<ExperimentResult> finishedJobs = new ArrayList<ExperimentResult>();
-                float currentRunningTime = 0.0f;
-                boolean all_done = true;
-                for (ExperimentResult er: results.values()) {
-
-                    all_done &= (er.getStatus().getStatusCode() >= 1 ||
-                             er.getStatus().getStatusCode() < -1);
-                    if (!er.getStatus().equals(StatusCode.RUNNING) && !er.getStatus().equals(StatusCode.NOT_STARTED)) {
-                        finishedJobs.add(er);
+            else {
+                newPopulation.add(matingPool.get(i));
+                newPopulation.add(matingPool.get((i+1) % populationSize));
+            }
+        }
+        
+        // mutation
+        for (int i = 0; i < populationSize; i++) {
+            pspace.mutateParameterConfiguration(rng, newPopulation.get(i).getConfig(), mutationStandardDeviationFactor, mutationProbability);
+        }
+        return newPopulation;
+    }
+    
+    /**
+     * Recombines two parents like breed(): crossover children, or the parents themselves
+     * (which are mutated in place like the copies of breed()), mutated either way.
+     */
+    private List<Individual> mate(Individual parent1, Individual parent2, boolean crossover) {
+        List<Individual> children = new ArrayList<Individual>();
+        if (crossover) {
+            Pair<ParameterConfiguration, ParameterConfiguration> pair;
+            if (use2PointCrossover) {
+                pair = pspace.crossover2Point(parent1.getConfig(), parent2.getConfig(), rng);
+            } else {
+                pair = pspace.crossover(parent1.getConfig(), parent2.getConfig(), rng);
+            }
+            children.add(new Individual(pair.getFirst()));
+            children.add(new Individual(pair.getSecond()));
+        } else {
+            children.add(parent1);
+            children.add(parent2);
+        }
+        for (Individual child: children) {
+            pspace.mutateParameterConfiguration(rng, child.getConfig(), mutationStandardDeviationFactor, mutationProbability);
+        }
+        return children;
+    }
+    
+    /**
+     * Breeds the matings of the next generation whose tournaments can be decided with the
+     * provisional costs of the population and launches their children while the cores of
+     * the experiment have free capacity (see OffspringPipeline). Does nothing if pipelining
+     * is disabled or the pipeline isn't started.
+     */
+    protected void speculate() throws Exception {
+        if (pipeline == null || pipeline.getPopulation() == null) return;
+        long start = System.nanoTime();
+        List<Individual> population = pipeline.getPopulation();
+        List<OffspringPipeline.Mating> matings = pipeline.getMatings();
+        while (matings.size() < populationSize / 2) matings.add(new OffspringPipeline.Mating(drawTournament(), drawTournament()));
+        for (OffspringPipeline.Mating mating: matings) {
+            if (mating.children != null) continue;
+            Individual parent1 = tournamentWinner(population, mating.tournament1, true);
+            Individual parent2 = tournamentWinner(population, mating.tournament2, true);
+            if (parent1 == null || parent2 == null) continue;
+            mating.parent1 = parent1;
+            mating.parent2 = parent2;
+            mating.parentKey1 = FitnessCache.canonicalKey(parent1.getConfig());
+            mating.parentKey2 = FitnessCache.canonicalKey(parent2.getConfig());
+            if (rng.nextFloat() < crossoverProbability) {
+                mating.children = mate(parent1, parent2, true);
+            } else {
+                // the parents may still change, the copies are only made when the mating is confirmed
+                mating.copies = true;
+                mating.children = Collections.emptyList();
+            }
+        }
+        
+        int numJobs = initialRuns(generation + 1);
+        int capacity = getFreeCapacity();
+        List<Individual> launch = new ArrayList<Individual>();
+        Set<String> keys = new HashSet<String>();
+        boolean indexed = false;
+        for (OffspringPipeline.Mating mating: matings) {
+            if (mating.children == null) continue;
+            for (Individual child: mating.children) {
+                if (capacity <= 0) break;
+                if (!pipeline.check(child)) continue;
+                if (deduplication) {
+                    if (!indexed) {
+                        // the population and the children that were already launched
+                        indexGenotypes(population);
+                        for (OffspringPipeline.Mating m: matings) {
+                            if (m.children == null) continue;
+                            for (Individual c: m.children) {
+                                if (c.getIdSolverConfiguration() != 0) genotypes.add(c);
+                            }
+                        }
+                        indexed = true;
                     }
-                    else if (er.getStatus().equals(StatusCode.RUNNING)) {
-                        currentRunningTime += er.getRunningTime();
+                    deduplicate(child);
+                }
+                // children equal to existing configurations or to each other are looked up by evaluatePopulation()
+                if (lookup(child.getConfig()).getIdSolverConfiguration() != 0) continue;
+                if (!keys.add(FitnessCache.canonicalKey(child.getConfig()))) continue;
+                launch.add(child);
+                capacity -= numJobs;
+            }
+        }
+        if (!launch.isEmpty()) {
+            for (Map.Entry<Individual, List<Integer>> launched: launchIndividuals(launch, generation + 1, numJobs).entrySet()) {
+                pipeline.launched(launched.getKey(), track(launched.getValue(), JobPriorities.SPECULATIVE));
+            }
+            metrics.add("speculation.launched", launch.size());
+        }
+        metrics.timeSince("phase.speculate", start);
+    }
+    
+    /**
+     * Creates the next generation from the matings of the pipeline: the tournaments are decided
+     * with the final costs, matings with the same winners keep their children, the others are
+     * bred again from the actual winners. Matings that weren't drawn yet are bred like in breed().
+     */
+    protected List<Individual> breedPipelined(List<Individual> population) {
+        List<OffspringPipeline.Mating> matings = pipeline.getMatings();
+        // all winners are determined before copies are mutated in place
+        List<Individual[]> parents = new ArrayList<Individual[]>();
+        List<Boolean> confirmed = new ArrayList<Boolean>();
+        for (OffspringPipeline.Mating mating: matings) {
+            Individual parent1 = tournamentWinner(population, mating.tournament1, false);
+            Individual parent2 = tournamentWinner(population, mating.tournament2, false);
+            parents.add(new Individual[] {parent1, parent2});
+            confirmed.add(mating.children != null && parent1 == mating.parent1 && parent2 == mating.parent2
+                    && FitnessCache.canonicalKey(parent1.getConfig()).equals(mating.parentKey1)
+                    && FitnessCache.canonicalKey(parent2.getConfig()).equals(mating.parentKey2));
+        }
+        List<Individual> newPopulation = new ArrayList<Individual>();
+        int kept = 0, rebred = 0;
+        for (int i = 0; i < matings.size(); i++) {
+            OffspringPipeline.Mating mating = matings.get(i);
+            Individual[] p = parents.get(i);
+            if (confirmed.get(i)) {
+                kept++;
+                if (mating.copies) newPopulation.addAll(mate(p[0], p[1], false));
+                else newPopulation.addAll(mating.children);
+            } else {
+                if (mating.children != null) rebred++;
+                newPopulation.addAll(mate(p[0], p[1], rng.nextFloat() < crossoverProbability));
+            }
+        }
+        while (newPopulation.size() < populationSize) {
+            Individual parent1 = tournamentSelect(population);
+            Individual parent2 = tournamentSelect(population);
+            newPopulation.addAll(mate(parent1, parent2, rng.nextFloat() < crossoverProbability));
+        }
+        metrics.add("speculation.confirmed", kept);
+        metrics.add("speculation.rebred", rebred);
+        System.out.println("pipelining: " + kept + " of " + matings.size() + " speculative matings confirmed, "
+                + rebred + " bred again");
+        return newPopulation;
+    }
+    
+    /**
+     * Ends the pipeline of the generation.
+     * @param population the next generation, null if there is none
+     * @return the launched speculative children that are part of the next generation and their jobs
+     */
+    protected Map<Individual, JobGroup> finishPipeline(List<Individual> population) throws Exception {
+        Map<Individual, JobGroup> groups = new LinkedHashMap<Individual, JobGroup>();
+        if (pipeline == null) return groups;
+        Map<Individual, JobGroup> launched = pipeline.finish();
+        if (population != null) {
+            for (Individual ind: population) {
+                JobGroup group = launched.remove(ind);
+                if (group == null) continue;
+                groups.put(ind, group);
+                if (priorities != null) priorities.setPriority(group, JobPriorities.OFFSPRING);
+            }
+        }
+        for (Map.Entry<Individual, JobGroup> e: launched.entrySet()) abandon(e.getKey(), e.getValue());
+        return groups;
+    }
+    
+    /**
+     * Stops the evaluation of a speculative child that isn't part of the next generation.
+     * A child whose runs all finished keeps its cost. Otherwise its unfinished runs are killed
+     * and it stays without cost in the database and the fitness cache. If it turns up again,
+     * its finished runs are reused and only the killed ones are launched again (see trackCourse()).
+     */
+    protected void abandon(Individual child, JobGroup group) throws Exception {
+        metrics.add("speculation.abandoned", 1);
+        if (!group.isDone()) {
+            group.kill();
+            record(group);
+            return;
+        }
+        record(group);
+        child.setCost(group.getCost());
+        api.updateSolverConfigurationCost(child.getIdSolverConfiguration(), child.getCost(), costFunction);
+        cacheIndividual(child, group.getNumFinished());
+    }
+    
+    /**
+     * Replaces the individuals of the offspring that would have to be launched with
+     * the candidates of lowest predicted cost among surrogateOversampling times as many
+     * candidates. Offspring that were already evaluated (copies of parents) are kept.
+     */
+    protected List<Individual> screenOffspring(List<Individual> population, List<Individual> offspring) {
+        List<Individual> screened = new ArrayList<Individual>();
+        List<Individual> candidates = new ArrayList<Individual>();
+        for (Individual ind: offspring) {
+            if (ind.getIdSolverConfiguration() != 0) screened.add(ind);
+            else candidates.add(ind);
+        }
+        int needed = candidates.size();
+        for (int i = 0; i < needed * (surrogateOversampling - 1); i++) {
+            candidates.add(createOffspring(population));
+        }
+        screened.addAll(surrogate.selectBest(candidates, needed));
+        System.out.println("surrogate selected " + needed + " of " + candidates.size() + " candidates");
+        return screened;
+    }
+    
+    /**
+     * Creates surrogateOversampling offspring and returns the one of lowest predicted cost.
+     */
+    protected Individual screenOffspring(List<Individual> population) {
+        List<Individual> candidates = new ArrayList<Individual>();
+        for (int i = 0; i < surrogateOversampling; i++) candidates.add(createOffspring(population));
+        return surrogate.selectBest(candidates, 1).get(0);
+    }
+    
+    /**
+     * Creates a single offspring: tournament selection of the parents, crossover with
+     * the crossover probability (otherwise the first parent is copied) and mutation.
+     */
+    protected Individual createOffspring(List<Individual> population) {
+        Individual parent1 = tournamentSelect(population);
+        ParameterConfiguration childConfig;
+        if (rng.nextFloat() < crossoverProbability) {
+            Individual parent2 = tournamentSelect(population);
+            Pair<ParameterConfiguration, ParameterConfiguration> children;
+            if (use2PointCrossover) {
+                children = pspace.crossover2Point(parent1.getConfig(), parent2.getConfig(), rng);
+            } else {
+                children = pspace.crossover(parent1.getConfig(), parent2.getConfig(), rng);
+            }
+            childConfig = children.getFirst();
+        }
+        else {
+            childConfig = new ParameterConfiguration(parent1.getConfig());
+        }
+        pspace.mutateParameterConfiguration(rng, childConfig, mutationStandardDeviationFactor, mutationProbability);
+        return new Individual(childConfig);
+    }
+    
+    /**
+     * Rebuilds the genotype index from the given individuals.
+     */
+    protected void indexGenotypes(List<Individual> individuals) {
+        genotypes.clear();
+        genotypes.addAll(individuals);
+    }
+    
+    /**
+     * Mutates the new offspring again that are duplicates of an individual of the population
+     * or of an earlier offspring (see deduplicate(Individual)). Offspring that already have a
+     * solver configuration (copies of parents, launched speculative children) aren't changed.
+     */
+    protected void deduplicate(List<Individual> population, List<Individual> offspring) {
+        indexGenotypes(population);
+        for (Individual ind: offspring) {
+            if (ind.getIdSolverConfiguration() != 0) genotypes.add(ind);
+        }
+        int duplicates = 0;
+        for (Individual ind: offspring) {
+            if (ind.getIdSolverConfiguration() == 0 && deduplicate(ind)) duplicates++;
+        }
+        if (duplicates > 0) System.out.println("mutated " + duplicates + " duplicate offspring again");
+    }
+    
+    /**
+     * Mutates a new individual again, at most duplicateRetries times, while it is equal to an
+     * indexed genotype or within duplicateDistance of one, then adds it to the genotype index.
+     * Duplicates that can't be resolved are kept, they are looked up instead of launched again.
+     * @return true if the individual was a duplicate
+     */
+    protected boolean deduplicate(Individual ind) {
+        boolean duplicate = genotypes.hasNeighbour(ind.getConfig(), duplicateDistance);
+        if (duplicate) {
+            metrics.add("dedup.duplicates", 1);
+            for (int i = 0; i < duplicateRetries && genotypes.hasNeighbour(ind.getConfig(), duplicateDistance); i++) {
+                pspace.mutateParameterConfiguration(rng, ind.getConfig(), mutationStandardDeviationFactor, mutationProbability);
+                metrics.add("dedup.mutations", 1);
+            }
+            if (genotypes.hasNeighbour(ind.getConfig(), duplicateDistance)) metrics.add("dedup.unresolved", 1);
+        }
+        genotypes.add(ind);
+        return duplicate;
+    }
+    
+    /**
+     * Replaces an individual of the population with the given individual if the latter is better:
+     * the nearest individual of a window with crowding, the worst individual otherwise.
+     * @return true if the individual was inserted
+     */
+    protected boolean replace(List<Individual> population, Individual ind) {
+        return crowding ? replaceNearest(population, ind) : replaceWorst(population, ind);
+    }
+    
+    /**
+     * Crowding replacement (restricted tournament replacement): the individual replaces
+     * the individual with the nearest genotype among crowdingWindow random individuals of the
+     * population (all individuals if crowdingWindow is 0) if it is better. Different niches
+     * of the search space don't compete, so the population doesn't collapse to a single one.
+     * @return true if the individual was inserted
+     */
+    protected boolean replaceNearest(List<Individual> population, Individual ind) {
+        List<Individual> window = new ArrayList<Individual>();
+        List<Integer> positions = new ArrayList<Integer>();
+        if (crowdingWindow <= 0 || crowdingWindow >= population.size()) {
+            window.addAll(population);
+            for (int i = 0; i < population.size(); i++) positions.add(i);
+        } else {
+            while (positions.size() < crowdingWindow) {
+                int ix = rng.nextInt(population.size());
+                if (positions.contains(ix)) continue;
+                positions.add(ix);
+                window.add(population.get(ix));
+            }
+        }
+        int nearest = positions.get(genotypes.nearest(ind.getConfig(), window));
+        if (ind.getCost() < population.get(nearest).getCost()) {
+            population.set(nearest, ind);
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Replaces the worst individual of the population with the given individual
+     * if the latter is better.
+     * @return true if the individual was inserted
+     */
+    protected boolean replaceWorst(List<Individual> population, Individual ind) {
+        int worst = 0;
+        for (int i = 1; i < population.size(); i++) {
+            if (population.get(i).getCost() > population.get(worst).getCost()) worst = i;
+        }
+        if (ind.getCost() < population.get(worst).getCost()) {
+            population.set(worst, ind);
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Number of additional jobs the computation cores of the experiment can take
+     * right now, i.e. the number of cores minus the number of not started and running jobs.
+     * With a core budget the experiment can use at most its share of the cores.
+     */
+    protected int getFreeCapacity() throws Exception {
+        int cores = api.getComputationCoreCount(idExperiment);
+        if (budget != null) cores = Math.min(cores, budget.getShare(idExperiment));
+        return cores - api.getComputationJobCount(idExperiment);
+    }
+    
+    /**
+     * Waits until the share of the core budget has free cores, returns right away without a budget.
+     */
+    protected void awaitCapacity() throws Exception {
+        if (budget == null) return;
+        while (getFreeCapacity() <= 0) {
+            tracker.awaitUpdate(3000);
+        }
+    }
+    
+    /**
+     * Launches an offspring in steady-state mode. Offspring of existing configurations
+     * don't need any cluster time, they replace the worst individual right away. If they
+     * are still being evaluated (no cost yet) they are simply dropped.
+     * @return number of launched jobs
+     */
+    protected int addOffspring(List<Individual> population, Map<Individual, JobGroup> running, Individual child, int numJobs) throws Exception {
+        FitnessCache.Entry entry = lookup(child.getConfig());
+        metrics.add("lookup.total", 1);
+        if (entry.getIdSolverConfiguration() != 0) {
+            metrics.add("lookup.duplicates", 1);
+            child.setIdSolverConfiguration(entry.getIdSolverConfiguration());
+            child.setName(entry.getName());
+            child.setCost(entry.getCost());
+            if (child.getCost() != null) {
+                replace(population, child);
+                finishedOffspring++;
+            }
+            return 0;
+        }
+        running.put(child, track(launchIndividual(child, generation + 1, numJobs)));
+        return numJobs;
+    }
+    
+    /**
+     * Steady-state variant of evolve(). Instead of waiting for a whole generation
+     * to finish, a new offspring is launched every time the computation cores of the
+     * experiment have free capacity. Finished offspring replace the worst individual
+     * of the population if they are better.
+     * @throws Exception
+     */
+    public void evolveSteadyState() throws Exception {
+        if (racing || intensification) throw new IllegalStateException("Racing and intensification only work in generational mode.");
+        // offspring that are currently evaluated and their jobs
+        Map<Individual, JobGroup> running = new LinkedHashMap<Individual, JobGroup>();
+        List<Individual> population;
+        Checkpoint checkpoint = loadCheckpoint();
+        if (checkpoint != null && checkpoint.isEvaluated()) {
+            population = checkpoint.getPopulation();
+            running = reattach(checkpoint.getRunning());
+        } else {
+            if (checkpoint == null) {
+                population = initializePopulation(populationSize);
+                evaluatePopulation(population, generation);
+            } else {
+                population = checkpoint.getPopulation();
+                evaluatePopulation(population, generation, reattach(checkpoint.getRunning()));
+            }
+            
+            float sum = 0;
+            for (int i = 0; i < populationSize; i++) {
+                sum += population.get(i).getCost();
+                if (globalBest == null || population.get(i).getCost() < globalBest.getCost()) {
+                    globalBest = new Individual(population.get(i));
+                }
+            }
+            generationAverage = sum / populationSize;
+            System.out.println("---------\nGeneration " + generation + " - global best: " + globalBest.getName() +
+                    " with average time " + globalBest.getCost() +
+                    " - generation avg: " + generationAverage);
+            recordMetrics(population);
+            writeCheckpoint(population, null, true);
+        }
+        
+        while (true) {
+            // launch new offspring as long as there are free cores. If nothing is running at all
+            // launch at least one offspring so the search can't stall on a busy cluster.
+            int freeCapacity = getFreeCapacity();
+            int numJobs = generationRuns(generation + 1);
+            int attempts = 0;
+            boolean changed = false;
+            boolean indexed = false;
+            while ((freeCapacity > 0 || running.isEmpty()) && attempts++ < populationSize) {
+                long start = System.nanoTime();
+                Individual child;
+                if (useSurrogate()) {
+                    child = screenOffspring(population);
+                    metrics.timeSince("phase.surrogate", start);
+                } else {
+                    child = createOffspring(population);
+                    metrics.timeSince("phase.breed", start);
+                }
+                if (deduplication) {
+                    start = System.nanoTime();
+                    if (!indexed) {
+                        indexGenotypes(population);
+                        genotypes.addAll(running.keySet());
+                        indexed = true;
                     }
+                    deduplicate(child);
+                    metrics.timeSince("phase.deduplicate", start);
                 }
-                if (costFunction.calculateCost(finishedJobs) + currentRunningTime >= individual.getCost()) {
-                    System.out.println("neighbour can't beat the configuration anymore. Killing jobs and aboring.");
-                    for (int idJob: jobs) api.killJob(idJob);
-                    better = false;
-                    break;
+                freeCapacity -= addOffspring(population, running, child, numJobs);
+                changed = true;
+            }
+            
+            // wake up on new results, but check the free capacity at least every 3 seconds
+            tracker.awaitUpdate(3000);
+            updatePriorities(population, running);
+            
+            Iterator<Map.Entry<Individual, JobGroup>> it = running.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Individual, JobGroup> entry = it.next();
+                if (!entry.getValue().isDone()) continue;
+                
+                Individual child = entry.getKey();
+                child.setCost(entry.getValue().getCost());
+                record(entry.getValue());
+                api.updateSolverConfigurationCost(child.getIdSolverConfiguration(), child.getCost(), costFunction);
+                cacheIndividual(child, entry.getValue().getNumFinished());
+                if (replace(population, child) && child.getCost() < globalBest.getCost()) {
+                    globalBest = new Individual(child);
+                }
+                finishedOffspring++;
+                it.remove();
+                changed = true;
+            }
+            
+            if (finishedOffspring >= populationSize) {
+                finishedOffspring -= populationSize;
+                generation += 1;
+                saveFitnessCache();
+                if (terminationCriterion(generationAverage, population)) break;
+                float sum = 0;
+                for (int i = 0; i < populationSize; i++) {
+                    sum += population.get(i).getCost();
                 }
-                if (all_done) break;
-            }
-
-            if (better) {
-                List<ExperimentResult> resultList = new ArrayList<ExperimentResult>(results.values());
-                System.out.println("SLS improved cost from " + individual.getCost() + " to " + costFunction.calculateCost(resultList));
-                individual.setConfig(nbr);
-                individual.setCost(costFunction.calculateCost(resultList));
-                individual.setIdSolverConfiguration(idSolverConfig);
-                individual.setName(individual.getName() + " SLS");
-                api.updateSolverConfigurationName(idSolverConfig, individual.getName());
-                api.updateSolverConfigurationCost(idSolverConfig, individual.getCost(), costFunction);
-                SLSImprove(individual, steps - 1);
-                break;
-            }  else {
+                generationAverage = sum / populationSize;
+                System.out.println("---------\nGeneration " + generation + " - global best: " + globalBest.getName() +
+                        " with average time " + globalBest.getCost() +
+                        " - generation avg: " + generationAverage + " - running offspring: " + running.size());
+                recordMetrics(population);
+                emigrate(population);
+                for (Individual immigrant: immigrate()) addOffspring(population, running, immigrant, numJobs);
+            }
+            if (changed) writeCheckpoint(population, running, true);
+        }
+        
+        // the remaining offspring can't influence the result anymore
+        for (JobGroup group: running.values()) {
+            group.kill();
+            record(group);
+        }
+        
+        float sum = 0;
+        for (int i = 0; i < populationSize; i++) {
+            sum += population.get(i).getCost();
+            if (population.get(i).getCost() < globalBest.getCost()) {
+                globalBest = population.get(i);
+            }
+        }
+        generationAverage = sum / populationSize;
+        System.out.println("---------\nno significant improvement in generation average - terminating");
+        System.out.println("Generation " + generation + " - global best: " + globalBest.getName() +
+                " with average time " + globalBest.getCost() +
+                " - generation avg: " + generationAverage + "----------------------\n----------------------");
+        recordMetrics(population);
+    }
+    
+    /**
+     * State of the stochastic local search of a single individual. Neighbours are
+     * evaluated one at a time per individual, but the states of all individuals
+     * of an SLS phase advance concurrently (see SLSImprove(List, int)).
+     */
+    private class SLSState {
+        private final int maxNeighbours = 5;
+        private final Individual individual;
+        private int steps;
+        private int neighboursTried;
+        private List<ParameterConfiguration> nbh;
+        private ParameterConfiguration nbr;
+        private int idSolverConfig;
+        private JobGroup jobs;
+        /** the current neighbour if it was added to a batch that wasn't launched yet */
+        private LaunchBatch.Entry pending;
+        
+        SLSState(Individual individual, int steps) {
+            this.individual = individual;
+            this.steps = steps;
+        }
+        
+        /**
+         * Starts a new SLS step at the current configuration of the individual.
+         * @param batch batch the next neighbour is added to
+         * @return false if the search of this individual is finished
+         */
+        boolean descend(LaunchBatch batch) throws Exception {
+            System.out.println("running SLS depth " + (3 - steps) + " for " + individual.getName());
+            if (steps <= 0) return false;
+            nbh = pspace.getNeighbourhood(individual.getConfig());
+            if (nbh.size() == 0) return false;
+            neighboursTried = 0;
+            return launchNeighbour(batch);
+        }
+        
+        /**
+         * Picks a random neighbour that wasn't evaluated yet and adds it to the batch.
+         * @return false if maxNeighbours neighbours have been tried already
+         */
+        boolean launchNeighbour(LaunchBatch batch) throws Exception {
+            if (neighboursTried >= maxNeighbours) return false;
+            neighboursTried++;
+            System.out.println("trying neighbour...");
+            nbr = randomNeighbour();
+            if (useSurrogate()) {
+                List<Individual> candidates = new ArrayList<Individual>();
+                candidates.add(new Individual(nbr));
+                for (int i = 1; i < surrogateOversampling; i++) candidates.add(new Individual(randomNeighbour()));
+                nbr = surrogate.selectBest(candidates, 1).get(0).getConfig();
+            }
+
+            int numJobs = api.getCourseLength(idExperiment);
+            int[] cpuTimeLimits = new int[numJobs];
+            for (int j = 0; j < numJobs; j++) cpuTimeLimits[j] = jobCPUTimeLimit;
+            pending = batch.add(nbr, "", cpuTimeLimits);
+            metrics.add("sls.neighbours", 1);
+            return true;
+        }
+        
+        /**
+         * Starts tracking the jobs of the neighbour after its batch was launched.
+         * @param best the best individual of the SLS, its neighbours get a higher priority
+         */
+        void launched(Individual best) throws Exception {
+            if (pending == null) return;
+            idSolverConfig = pending.getIdSolverConfig();
+            fitnessCache.put(nbr, new FitnessCache.Entry(idSolverConfig, pending.getName(), null, 0));
+            if (history != null) history.addConfiguration(idSolverConfig, nbr);
+            jobs = track(pending.getJobs(), individual == best ? JobPriorities.SLS_BEST : JobPriorities.SLS);
+            pending = null;
+        }
+        
+        /**
+         * Picks a random neighbour, preferably one that wasn't evaluated yet.
+         */
+        private ParameterConfiguration randomNeighbour() throws Exception {
+            ParameterConfiguration nbr = nbh.get(rng.nextInt(nbh.size()));
+            int count = 1;
+            while (count < nbh.size() && lookup(nbr).getIdSolverConfiguration() != 0) {
+                nbr = nbh.get(rng.nextInt(nbh.size()));
+                count++;
+            }
+            return nbr;
+        }
+        
+        /**
+         * Checks the jobs of the current neighbour. The neighbour is aborted as soon as it
+         * can't beat the individual anymore, and accepted if it finished with a better cost.
+         * @param batch batch the next neighbour is added to
+         * @return false if the search of this individual is finished
+         */
+        boolean update(LaunchBatch batch) throws Exception {
+            boolean all_done = jobs.isDone();
+            // cost of the finished jobs plus the time the running jobs already ran
+            if (jobs.getCost() + jobs.getRunningTime() >= individual.getCost()) {
+                System.out.println("neighbour can't beat the configuration anymore. Killing jobs and aboring.");
+                jobs.kill();
+                record(jobs);
+                // the cost of the individual is only a lower bound of the neighbour's cost,
+                // the surrogate is only trained on real costs
                 System.out.println("SLS yielded no improvement");
+                return launchNeighbour(batch);
             }
+            if (!all_done) return true;
+            
+            record(jobs);
+            System.out.println("SLS improved cost from " + individual.getCost() + " to " + jobs.getCost());
+            individual.setConfig(nbr);
+            individual.setCost(jobs.getCost());
+            individual.setIdSolverConfiguration(idSolverConfig);
+            individual.setName(individual.getName() + " SLS");
+            metrics.add("sls.accepted", 1);
+            api.updateSolverConfigurationName(idSolverConfig, individual.getName());
+            api.updateSolverConfigurationCost(idSolverConfig, individual.getCost(), costFunction);
+            cacheIndividual(individual, jobs.getNumFinished());
+            steps--;
+            return descend(batch);
+        }
+    }
+    
+    public void SLSImprove(Individual individual, int steps) throws Exception {
+        List<Individual> individuals = new ArrayList<Individual>();
+        individuals.add(individual);
+        SLSImprove(individuals, steps);
+    }
+    
+    /**
+     * Runs the stochastic local search for all given individuals at once.
+     * The neighbour evaluations of all individuals are in flight at the same time
+     * and their jobs are polled together by the job tracker.
+     * @param individuals
+     * @param steps maximum SLS depth
+     * @throws Exception
+     */
+    public void SLSImprove(List<Individual> individuals, int steps) throws Exception {
+        long start = System.nanoTime();
+        List<SLSState> active = new ArrayList<SLSState>();
+        // the same individual can be in the population more than once (copies from the mating pool)
+        Set<Individual> started = Collections.newSetFromMap(new IdentityHashMap<Individual, Boolean>());
+        // the neighbours of each round are launched together in one batch
+        LaunchBatch batch = new LaunchBatch();
+        for (Individual individual: individuals) {
+            if (!started.add(individual)) continue;
+            SLSState state = new SLSState(individual, steps);
+            if (state.descend(batch)) active.add(state);
         }
+        launchNeighbours(active, batch);
         
+        while (!active.isEmpty()) {
+            tracker.awaitUpdate(1000);
+            updatePriorities(null, null);
+            speculate();
+            batch = new LaunchBatch();
+            Iterator<SLSState> it = active.iterator();
+            while (it.hasNext()) {
+                if (!it.next().update(batch)) it.remove();
+            }
+            launchNeighbours(active, batch);
+        }
+        metrics.timeSince("phase.sls", start);
+    }
+    
+    private void launchNeighbours(List<SLSState> states, LaunchBatch batch) throws Exception {
+        if (batch.isEmpty()) return;
+        awaitCapacity();
+        api.launchBatch(idExperiment, batch, rng);
+        Individual best = null;
+        for (SLSState state: states) {
+            if (best == null || state.individual.getCost() < best.getCost()) best = state.individual;
+        }
+        for (SLSState state: states) state.launched(best);
+        updatePriorities(null, null);
     }
     
     public void SLSImprove(List<Individual> population) throws Exception {
         int maxDepth = 2;
-        for (Individual individual: population) {
-            SLSImprove(individual, maxDepth);
-        }
+        SLSImprove(population, maxDepth);
     }
 }
@@ -0,0 +1,134 @@
+package edacc.configurator.ga;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import edacc.parameterspace.Parameter;
+import edacc.parameterspace.ParameterConfiguration;
+import edacc.parameterspace.domain.Domain;
+import edacc.parameterspace.domain.IntegerDomain;
+import edacc.parameterspace.domain.MixedDomain;
+import edacc.parameterspace.domain.RealDomain;
+import edacc.parameterspace.graph.ParameterGraph;
+
+/**
+ * Encoded parameter configuration for distance computations (see Surrogate, GenotypeIndex
+ * and ReplayLog). The values are stored in the order of the sorted parameters of the
+ * parameter graph (see parameters()).
+ *
+ * The distance of two genotypes is the average over all parameters of |a - b| * scale
+ * (at most 1) for numeric values and of 0 (equal) or 1 (different) for all other values,
+ * 0 if there are no parameters. The scale of a parameter is 1 / (high - low) of the bounds
+ * its values are normalized with, e.g. of its domain (see domainScale()) or of the observed
+ * values (see scale()). Numeric values of parameters without a scale (0) are either equal or
+ * different. Inactive parameters (null) only match inactive parameters.
+ */
+public class Genotype {
+    /** numeric values, NaN for non-numeric and inactive parameters */
+    private final double[] numeric;
+    /** all other values */
+    private final Object[] values;
+
+    private Genotype(double[] numeric, Object[] values) {
+        this.numeric = numeric;
+        this.values = values;
+    }
+
+    /**
+     * @return parameters of the graph in the order of the encoded values
+     */
+    public static Parameter[] parameters(ParameterGraph pspace) {
+        List<Parameter> params = new ArrayList<Parameter>(pspace.getParameterSet());
+        Collections.sort(params);
+        return params.toArray(new Parameter[params.size()]);
+    }
+
+    public static Genotype encode(Parameter[] parameters, ParameterConfiguration config) {
+        double[] numeric = new double[parameters.length];
+        Object[] values = new Object[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            Object value = config.getParameterValue(parameters[i]);
+            if (value instanceof Number) {
+                numeric[i] = ((Number) value).doubleValue();
+            } else {
+                numeric[i] = Double.NaN;
+                values[i] = value;
+            }
+        }
+        return new Genotype(numeric, values);
+    }
+
+    /**
+     * @return 1 / (high - low), 0 if the bounds are empty or undefined
+     */
+    public static double scale(double low, double high) {
+        return high > low ? 1.0 / (high - low) : 0;
+    }
+
+    /**
+     * @return scale of each parameter by the bounds of the numeric values of its domain
+     */
+    public static double[] domainScale(Parameter[] parameters) {
+        double[] scale = new double[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            double[] bounds = bounds(parameters[i].getDomain());
+            if (bounds != null) scale[i] = scale(bounds[0], bounds[1]);
+        }
+        return scale;
+    }
+
+    /**
+     * @return low and high of the numeric values of the domain, null if it has none
+     */
+    private static double[] bounds(Domain domain) {
+        if (domain instanceof IntegerDomain) {
+            IntegerDomain d = (IntegerDomain) domain;
+            return new double[] {d.getLow(), d.getHigh()};
+        } else if (domain instanceof RealDomain) {
+            RealDomain d = (RealDomain) domain;
+            return new double[] {d.getLow(), d.getHigh()};
+        } else if (domain instanceof MixedDomain) {
+            double[] bounds = null;
+            for (Domain sub: ((MixedDomain) domain).getDomains()) {
+                double[] b = bounds(sub);
+                if (b == null) continue;
+                if (bounds == null) bounds = b;
+                else bounds = new double[] {Math.min(bounds[0], b[0]), Math.max(bounds[1], b[1])};
+            }
+            return bounds;
+        }
+        return null;
+    }
+
+    /**
+     * @return numeric value of the i-th parameter, NaN if it isn't numeric or inactive
+     */
+    public double getNumeric(int i) {
+        return numeric[i];
+    }
+
+    /**
+     * Distance to the other genotype, the computation stops early and returns infinity
+     * as soon as the distance exceeds bound.
+     * @param scale scale of each parameter
+     */
+    public double distance(Genotype other, double[] scale, double bound) {
+        if (numeric.length == 0) return 0;
+        double d = 0;
+        double limit = bound * numeric.length;
+        for (int i = 0; i < numeric.length; i++) {
+            double x = numeric[i], y = other.numeric[i];
+            if (!Double.isNaN(x) && !Double.isNaN(y)) {
+                if (scale[i] > 0) d += Math.min(1, Math.abs(x - y) * scale[i]);
+                else if (x != y) d += 1;
+            } else if (!Double.isNaN(x) || !Double.isNaN(y)) {
+                d += 1;
+            } else if (values[i] == null ? other.values[i] != null : !values[i].equals(other.values[i])) {
+                d += 1;
+            }
+            if (d > limit) return Double.POSITIVE_INFINITY;
+        }
+        return d / numeric.length;
+    }
+}
@@ -0,0 +1,165 @@
+package edacc.configurator.ga;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import edacc.parameterspace.Parameter;
+import edacc.parameterspace.ParameterConfiguration;
+import edacc.parameterspace.graph.ParameterGraph;
+
+/**
+ * In-memory index of the genotypes (parameter configurations) of a set of individuals,
+ * e.g. the population and the offspring that are about to be launched. It finds
+ * duplicates before they are looked up in the database (see GAConfigurator, deduplication = 1),
+ * the nearest individual for crowding replacement and the diversity of the population.
+ *
+ * Exact duplicates are found by the canonical key of the configuration (see
+ * FitnessCache.canonicalKey) in O(1). The distance of two genotypes (see Genotype) normalizes
+ * the numeric values with the bounds of the domains of the parameters. A nearest-neighbour
+ * query is linear in the number of distinct genotypes and stops comparing a genotype as
+ * soon as its distance exceeds the nearest one so far.
+ *
+ * Genotypes are encoded when they are added, so the index has to be rebuilt when the
+ * configurations of indexed individuals change (mutation of copies in place, SLS).
+ */
+public class GenotypeIndex {
+    private static class Entry {
+        final Genotype genotype;
+        /** indexed individuals with this genotype */
+        final List<Individual> individuals = new ArrayList<Individual>();
+
+        Entry(Genotype genotype) {
+            this.genotype = genotype;
+        }
+    }
+
+    private final Parameter[] parameters;
+    /** scale of each parameter by the bounds of its domain */
+    private final double[] scale;
+    private final Map<String, Entry> genotypes = new LinkedHashMap<String, Entry>();
+    private final Map<Individual, Entry> byIndividual = new IdentityHashMap<Individual, Entry>();
+    private int size = 0;
+
+    public GenotypeIndex(ParameterGraph pspace) {
+        parameters = Genotype.parameters(pspace);
+        scale = Genotype.domainScale(parameters);
+    }
+
+    public void clear() {
+        genotypes.clear();
+        byIndividual.clear();
+        size = 0;
+    }
+
+    /**
+     * Adds the individual with its current configuration. An individual can be added more than once.
+     */
+    public void add(Individual ind) {
+        String key = FitnessCache.canonicalKey(ind.getConfig());
+        Entry entry = genotypes.get(key);
+        if (entry == null) {
+            entry = new Entry(encode(ind.getConfig()));
+            genotypes.put(key, entry);
+        }
+        entry.individuals.add(ind);
+        byIndividual.put(ind, entry);
+        size++;
+    }
+
+    public void addAll(Collection<Individual> individuals) {
+        for (Individual ind: individuals) add(ind);
+    }
+
+    /**
+     * @return number of indexed individuals
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return number of distinct genotypes of the indexed individuals
+     */
+    public int getNumGenotypes() {
+        return genotypes.size();
+    }
+
+    /**
+     * @return true if an indexed individual has an equal configuration
+     */
+    public boolean contains(ParameterConfiguration config) {
+        return genotypes.containsKey(FitnessCache.canonicalKey(config));
+    }
+
+    /**
+     * @return true if an indexed individual is equal to the configuration or within the given distance
+     */
+    public boolean hasNeighbour(ParameterConfiguration config, double distance) {
+        if (contains(config)) return true;
+        if (distance <= 0) return false;
+        Genotype query = encode(config);
+        for (Entry entry: genotypes.values()) {
+            if (query.distance(entry.genotype, scale, distance) <= distance) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return distance of the configuration to the nearest indexed genotype, infinity if the index is empty
+     */
+    public double nearestDistance(ParameterConfiguration config) {
+        if (contains(config)) return 0;
+        Genotype query = encode(config);
+        double nearest = Double.POSITIVE_INFINITY;
+        for (Entry entry: genotypes.values()) nearest = Math.min(nearest, query.distance(entry.genotype, scale, nearest));
+        return nearest;
+    }
+
+    /**
+     * @return position of the individual among the candidates whose configuration is nearest to
+     * the given configuration (the first one among equal distances), -1 if there are no candidates.
+     * The candidates don't have to be indexed.
+     */
+    public int nearest(ParameterConfiguration config, List<Individual> candidates) {
+        Genotype query = encode(config);
+        int nearest = -1;
+        double best = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < candidates.size(); i++) {
+            Individual ind = candidates.get(i);
+            Entry entry = byIndividual.get(ind);
+            Genotype genotype = entry != null ? entry.genotype : encode(ind.getConfig());
+            double d = query.distance(genotype, scale, best);
+            if (nearest == -1 || d < best) {
+                nearest = i;
+                best = d;
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * @return average distance of the indexed individuals to their nearest other indexed individual
+     * (0 for duplicates), 0 if there are less than two individuals. Quadratic in the number of genotypes.
+     */
+    public double meanNearestDistance() {
+        if (size < 2) return 0;
+        double sum = 0;
+        for (Entry entry: genotypes.values()) {
+            if (entry.individuals.size() > 1) continue;
+            double nearest = Double.POSITIVE_INFINITY;
+            for (Entry other: genotypes.values()) {
+                if (other != entry) nearest = Math.min(nearest, entry.genotype.distance(other.genotype, scale, nearest));
+            }
+            sum += nearest;
+        }
+        return sum / size;
+    }
+
+    private Genotype encode(ParameterConfiguration config) {
+        return Genotype.encode(parameters, config);
+    }
+}
@@ -7,12 +7,14 @@ public class Individual implements Comparable<Individual> {
 	private int idSolverConfiguration;
 	private Float cost;
 	private String name;
+	private boolean censored;
 	
 	public Individual(ParameterConfiguration config) {
 		this.config = config;
 		this.cost = null;
 		this.idSolverConfiguration = 0;
 		this.name = null;
+		this.censored = false;
 	}
 	
 	public Individual(Individual other) {
@@ -20,6 +22,7 @@ public class Individual implements Comparable<Individual> {
 	    this.cost = other.cost;
 	    this.idSolverConfiguration = other.idSolverConfiguration;
 	    this.name = other.name;
+	    this.censored = other.censored;
 	}
 
 	public final String getName() {
@@ -54,6 +57,18 @@ public class Individual implements Comparable<Individual> {
         this.idSolverConfiguration = idSolverConfiguration;
     }
 
+    /**
+     * @return true if the evaluation of this individual was aborted and its cost
+     * is only a lower bound based on the runs that were started
+     */
+    public final boolean isCensored() {
+        return censored;
+    }
+
+    public final void setCensored(boolean censored) {
+        this.censored = censored;
+    }
+
     @Override
     public int compareTo(Individual o) {
         return this.cost.compareTo(o.cost);
@@ -0,0 +1,271 @@
+package edacc.configurator.ga;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import edacc.model.ExperimentResult;
+import edacc.model.StatusCode;
+
+/**
+ * A group of jobs tracked by a JobTracker, usually all jobs that were launched
+ * for one solver configuration. The group is a future that is done as soon as
+ * all of its jobs are finished. The latest known results of its jobs (including
+ * running ones) can be retrieved at any time.
+ *
+ * If the group has a cost accumulator, the results of the jobs are added to it as
+ * they finish, so the cost of the finished jobs and the bounds of the final cost
+ * are available at any time without rescanning the results.
+ *
+ * If the tracker gives up polling (see JobTracker), the unfinished groups fail: they
+ * aren't done, but get() throws an ExecutionException instead of waiting.
+ */
+public class JobGroup implements Future<List<ExperimentResult>> {
+    private final JobTracker tracker;
+    private final List<Integer> jobs;
+    private final JobTracker.Listener listener;
+    private final CostAccumulator accumulator;
+    private final Metrics metrics;
+    private final Map<Integer, ExperimentResult> results = new HashMap<Integer, ExperimentResult>();
+    private int numFinished = 0;
+    /** number of running jobs and the total time they already ran */
+    private int numRunning = 0;
+    private float runningTime = 0;
+    /** largest CPU time limit of the polled jobs */
+    private int cpuTimeLimit = 0;
+    private boolean cancelled = false;
+    /** error the tracker gave up polling with, null if the group didn't fail */
+    private Exception failure = null;
+    /** time the group was tracked, used for the queue wait metrics */
+    private final long trackedAt;
+
+    JobGroup(JobTracker tracker, List<Integer> jobs, JobTracker.Listener listener, CostAccumulator accumulator, Metrics metrics) {
+        this.tracker = tracker;
+        this.jobs = Collections.unmodifiableList(new ArrayList<Integer>(jobs));
+        this.listener = listener;
+        this.accumulator = accumulator;
+        this.metrics = metrics;
+        this.trackedAt = tracker.getClock().currentTimeMillis();
+    }
+
+    /**
+     * @return metrics that receive the job counters of this group
+     */
+    Metrics getMetrics() {
+        return metrics;
+    }
+
+    public List<Integer> getJobs() {
+        return jobs;
+    }
+
+    /**
+     * @return the latest known results of the jobs of this group in the order
+     * of getJobs(). Jobs that weren't polled yet are missing.
+     */
+    public synchronized List<ExperimentResult> getResults() {
+        List<ExperimentResult> list = new ArrayList<ExperimentResult>();
+        for (Integer idJob: jobs) {
+            ExperimentResult result = results.get(idJob);
+            if (result != null) list.add(result);
+        }
+        return list;
+    }
+
+    /**
+     * @return the jobs that weren't seen started yet
+     */
+    public synchronized List<Integer> getPendingJobs() {
+        List<Integer> pending = new ArrayList<Integer>();
+        for (Integer idJob: jobs) {
+            ExperimentResult result = results.get(idJob);
+            if (result == null || result.getStatus().equals(StatusCode.NOT_STARTED)) pending.add(idJob);
+        }
+        return pending;
+    }
+
+    private CostAccumulator requireAccumulator() {
+        if (accumulator == null) throw new IllegalStateException("The job group doesn't have a cost accumulator.");
+        return accumulator;
+    }
+
+    /**
+     * @return cost of the finished jobs, see CostAccumulator.getCost()
+     * @throws IllegalStateException if the group doesn't have a cost accumulator
+     */
+    public synchronized float getCost() {
+        return requireAccumulator().getCost();
+    }
+
+    /**
+     * @return optimistic bound of the cost of all jobs of the group
+     * @throws IllegalStateException if the group doesn't have a cost accumulator
+     */
+    public synchronized float getLowerBound() {
+        return requireAccumulator().getLowerBound(jobs.size(), runningTime);
+    }
+
+    /**
+     * @return pessimistic bound of the cost of all jobs of the group,
+     * infinity if none of the jobs was polled yet
+     * @throws IllegalStateException if the group doesn't have a cost accumulator
+     */
+    public synchronized float getUpperBound() {
+        CostAccumulator accumulator = requireAccumulator();
+        if (results.isEmpty() && !jobs.isEmpty()) return Float.POSITIVE_INFINITY;
+        return accumulator.getUpperBound(jobs.size(), cpuTimeLimit);
+    }
+
+    /**
+     * @return the accumulator of the finished jobs, null if the group doesn't have one
+     */
+    public CostAccumulator getAccumulator() {
+        return accumulator;
+    }
+
+    public synchronized int getNumFinished() {
+        return numFinished;
+    }
+
+    public synchronized int getNumRunning() {
+        return numRunning;
+    }
+
+    /**
+     * @return total time the running jobs already ran
+     */
+    public synchronized float getRunningTime() {
+        return runningTime;
+    }
+
+    long getTrackedAt() {
+        return trackedAt;
+    }
+
+    /**
+     * Called by the tracker thread with the polled result of one of the jobs.
+     * @return true if the job was seen started (or finished) for the first time
+     */
+    synchronized boolean update(ExperimentResult result, boolean finished) {
+        ExperimentResult previous = results.put(result.getId(), result);
+        if (previous != null && previous.getStatus().equals(StatusCode.RUNNING)) {
+            numRunning--;
+            runningTime -= previous.getRunningTime();
+        }
+        if (result.getStatus().equals(StatusCode.RUNNING)) {
+            numRunning++;
+            runningTime += result.getRunningTime();
+        }
+        cpuTimeLimit = Math.max(cpuTimeLimit, result.getCPUTimeLimit());
+        if (finished) {
+            numFinished++;
+            if (accumulator != null) accumulator.add(result);
+            if (isDone()) notifyAll();
+        }
+        return (previous == null || previous.getStatus().equals(StatusCode.NOT_STARTED))
+                && !result.getStatus().equals(StatusCode.NOT_STARTED);
+    }
+
+    /**
+     * Called by the tracker when it gives up polling the jobs of this group.
+     */
+    synchronized void fail(Exception e) {
+        failure = e;
+        notifyAll();
+    }
+
+    JobTracker.Listener getListener() {
+        return listener;
+    }
+
+    /**
+     * Kills all jobs of this group and stops tracking them.
+     */
+    public void kill() throws Exception {
+        tracker.untrack(this);
+        List<Integer> unfinished = new ArrayList<Integer>();
+        float runningTime = 0;
+        synchronized (this) {
+            cancelled = true;
+            notifyAll();
+            for (Integer idJob: jobs) {
+                ExperimentResult result = results.get(idJob);
+                if (result != null && JobTracker.isFinished(result)) continue;
+                unfinished.add(idJob);
+                if (result != null && result.getStatus().equals(StatusCode.RUNNING)) runningTime += result.getRunningTime();
+            }
+        }
+        tracker.killJobs(this, unfinished, runningTime);
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        if (isDone()) return false;
+        try {
+            kill();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return cancelled || numFinished == jobs.size();
+    }
+
+    @Override
+    public List<ExperimentResult> get() throws InterruptedException, ExecutionException {
+        // without a tracker thread the waiting thread has to poll
+        while (tracker.isSynchronous() && !isDone()) tracker.awaitUpdate(JobTracker.MAX_POLL_INTERVAL);
+        synchronized (this) {
+            while (!isDone() && failure == null) wait();
+            return done();
+        }
+    }
+
+    /**
+     * @return results of the done group
+     */
+    private List<ExperimentResult> done() throws ExecutionException {
+        if (cancelled) throw new CancellationException();
+        if (!isDone()) throw new ExecutionException(failure);
+        return getResults();
+    }
+
+    /**
+     * The timeout is measured on the clock of the tracker, a simulated clock advances
+     * while the waiting thread polls.
+     */
+    @Override
+    public List<ExperimentResult> get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        Clock clock = tracker.getClock();
+        long deadline = clock.currentTimeMillis() + unit.toMillis(timeout);
+        // without a tracker thread the waiting thread has to poll
+        while (tracker.isSynchronous() && !isDone()) {
+            long remaining = deadline - clock.currentTimeMillis();
+            if (remaining <= 0) throw new TimeoutException();
+            tracker.awaitUpdate(Math.min(remaining, JobTracker.MAX_POLL_INTERVAL));
+        }
+        synchronized (this) {
+            while (!isDone() && failure == null) {
+                long remaining = deadline - clock.currentTimeMillis();
+                if (remaining <= 0) throw new TimeoutException();
+                wait(remaining);
+            }
+            return done();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package edacc.configurator.ga;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import edacc.configurator.ga.backend.EvaluationBackend;
+
+/**
+ * Priorities of the jobs that are waiting to be computed. Jobs with higher priorities
+ * are computed first.
+ *
+ * Every job group gets a base priority according to its role in the search (see the
+ * constants) which can be changed while its jobs wait, e.g. when the individual can't
+ * win a tournament anymore. The priority of a waiting job is its base priority plus one
+ * for every agingInterval seconds since it was launched, so low priority jobs don't starve.
+ *
+ * update() sends the priorities of all waiting jobs that changed since the last update
+ * to the backend in one batch. Jobs that started don't get updates anymore.
+ */
+public class JobPriorities {
+    /** individuals that can't win a tournament (or replace an individual) anymore */
+    public static final int LOW = 0;
+    /** speculative offspring of the next generation, see OffspringPipeline */
+    public static final int SPECULATIVE = 5;
+    public static final int OFFSPRING = 10;
+    public static final int SLS = 10;
+    /** SLS neighbours of the best individual */
+    public static final int SLS_BEST = 20;
+    /** intensification runs of challengers */
+    public static final int CHALLENGER = 20;
+    /** intensification runs of the incumbent */
+    public static final int INCUMBENT = 30;
+
+    private final EvaluationBackend api;
+    private final Metrics metrics;
+    private final int agingInterval;
+    private final Clock clock;
+    private final Map<JobGroup, Integer> groups = new LinkedHashMap<JobGroup, Integer>();
+    /** last priority sent for each waiting job */
+    private final Map<Integer, Integer> sent = new HashMap<Integer, Integer>();
+
+    /**
+     * @param api
+     * @param metrics receives the number of updated jobs ("jobs.reprioritized")
+     * @param agingInterval seconds of waiting per additional priority, 0 disables aging
+     * @param clock clock of the job tracker
+     */
+    public JobPriorities(EvaluationBackend api, Metrics metrics, int agingInterval, Clock clock) {
+        this.api = api;
+        this.metrics = metrics;
+        this.agingInterval = agingInterval;
+        this.clock = clock;
+    }
+
+    /**
+     * Sets the base priority of the jobs of the group, the new priorities are sent with the next update().
+     */
+    public synchronized void setPriority(JobGroup group, int priority) {
+        if (group.isDone()) return;
+        groups.put(group, priority);
+    }
+
+    /**
+     * Sends the changed priorities of all waiting jobs to the backend.
+     */
+    public void update() throws Exception {
+        Map<Integer, Integer> changes = new LinkedHashMap<Integer, Integer>();
+        long now = clock.currentTimeMillis();
+        synchronized (this) {
+            Iterator<Map.Entry<JobGroup, Integer>> it = groups.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<JobGroup, Integer> entry = it.next();
+                JobGroup group = entry.getKey();
+                if (group.isDone()) {
+                    for (Integer idJob: group.getJobs()) sent.remove(idJob);
+                    it.remove();
+                    continue;
+                }
+                int priority = entry.getValue();
+                if (agingInterval > 0) priority += (int) ((now - group.getTrackedAt()) / 1000 / agingInterval);
+                for (Integer idJob: group.getPendingJobs()) {
+                    Integer old = sent.put(idJob, priority);
+                    if (old == null || old != priority) changes.put(idJob, priority);
+                }
+            }
+        }
+        if (changes.isEmpty()) return;
+        api.setJobPriorities(changes);
+        metrics.add("jobs.reprioritized", changes.size());
+    }
+}
@@ -0,0 +1,366 @@
+package edacc.configurator.ga;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+import edacc.configurator.ga.backend.EvaluationBackend;
+import edacc.model.ExperimentResult;
+
+/**
+ * Tracks the status of all launched jobs of a configurator in a single background thread.
+ *
+ * Only jobs that haven't finished yet are polled, in batches of at most BATCH_SIZE
+ * job IDs per query. The poll interval adapts to the observed runtimes: it shrinks by a
+ * third after every round in which jobs finished and grows by half after every round in
+ * which nothing finished. It stays between MIN_POLL_INTERVAL, so finished jobs are seen
+ * within a second, and a quarter of the expected job runtime (at most MAX_POLL_INTERVAL).
+ * The load of the backend is bounded by the batches and the backoff: while jobs finish a
+ * round takes one query per BATCH_SIZE unfinished jobs per second, while nothing finishes
+ * the rounds become rarer. The expected runtime starts at the CPU time limit of the jobs
+ * and follows the runtimes of the finished jobs.
+ *
+ * The tracker records the number of started, finished and killed jobs, their CPU
+ * times and the time between tracking a job and seeing it started (queue wait, at
+ * the granularity of the poll interval) in the metrics. It remembers the jobs it killed,
+ * backends don't necessarily have a status for killed jobs.
+ *
+ * With a simulated clock (see SimulatedClock) there is no background thread, the
+ * threads that wait for updates poll themselves.
+ *
+ * If polling fails MAX_POLL_FAILURES times in a row, the tracker gives up: it stops
+ * polling, the waiting threads get an ExecutionException from awaitUpdate() and the
+ * get() methods of the unfinished groups.
+ *
+ * Callers register the jobs of a solver configuration with track() and get a JobGroup
+ * which is a future of the results and can optionally notify a listener.
+ *
+ * Job IDs are unique within an EDACC database, so the configurators of several
+ * experiments can share one tracker (see TuningHost). Each of them passes its own
+ * metrics to track().
+ */
+public class JobTracker implements Runnable {
+    /** maximum number of job IDs per getJobsByIDs query */
+    private static final int BATCH_SIZE = 500;
+    private static final long MIN_POLL_INTERVAL = 1000;
+    static final long MAX_POLL_INTERVAL = 10000;
+    /** number of failed poll rounds in a row after which the tracker gives up */
+    private static final int MAX_POLL_FAILURES = 10;
+
+    /**
+     * Listener that is called by the tracker thread every time new results
+     * of the jobs of a group were polled.
+     */
+    public interface Listener {
+        void jobGroupUpdated(JobGroup group);
+    }
+
+    private final EvaluationBackend api;
+    private final Metrics metrics;
+    private final Clock clock;
+    private final Thread thread;
+    private volatile boolean running = true;
+    /** unfinished jobs and the group they belong to */
+    private final Map<Integer, JobGroup> unfinished = new LinkedHashMap<Integer, JobGroup>();
+    private long pollInterval = MIN_POLL_INTERVAL;
+    /** expected job runtime in seconds */
+    private float expectedRuntime;
+    /** number of poll rounds so far, used to wake up threads in awaitUpdate() */
+    private long pollRounds = 0;
+    /** IDs of the jobs that were killed in this session */
+    private final Set<Integer> killed = new HashSet<Integer>();
+    private int pollFailures = 0;
+    /** error of the last poll round if the tracker gave up, null while it is polling */
+    private Exception failure = null;
+
+    /**
+     * @param api
+     * @param jobCPUTimeLimit
+     * @param metrics receives the job counters, CPU times and queue waits of groups that don't have their own metrics
+     */
+    public JobTracker(EvaluationBackend api, int jobCPUTimeLimit, Metrics metrics) {
+        this(api, jobCPUTimeLimit, metrics, Clock.SYSTEM);
+    }
+
+    /**
+     * @param clock time of the tracked jobs. With a simulated clock the tracker doesn't
+     * poll in a background thread but in the threads that wait for updates.
+     */
+    public JobTracker(EvaluationBackend api, int jobCPUTimeLimit, Metrics metrics, Clock clock) {
+        this.api = api;
+        this.metrics = metrics;
+        this.clock = clock;
+        this.expectedRuntime = jobCPUTimeLimit;
+        thread = new Thread(this, "JobTracker");
+        thread.setDaemon(true);
+    }
+
+    public void start() {
+        if (!isSynchronous()) thread.start();
+    }
+
+    public Clock getClock() {
+        return clock;
+    }
+
+    /**
+     * @return true if the jobs are polled by the threads that wait for updates
+     * instead of a background thread, i.e. the clock is simulated
+     */
+    public boolean isSynchronous() {
+        return clock instanceof SimulatedClock;
+    }
+
+    public void shutdown() {
+        running = false;
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * A job is finished if it terminated successfully or crashed.
+     * Not started (-1) and running (0) jobs aren't finished.
+     */
+    public static boolean isFinished(ExperimentResult result) {
+        return result.getStatus().getStatusCode() >= 1 ||
+               result.getStatus().getStatusCode() < -1;
+    }
+
+    /**
+     * A job is killed if it was killed through this tracker in this session. Its result is
+     * partial even if the backend reports it as finished (or it finished before the kill).
+     */
+    public synchronized boolean isKilled(ExperimentResult result) {
+        return killed.contains(result.getId());
+    }
+
+    /**
+     * @return IDs of the jobs that were killed through this tracker, e.g. for a checkpoint
+     */
+    public synchronized Set<Integer> getKilledJobs() {
+        return new HashSet<Integer>(killed);
+    }
+
+    /**
+     * Marks jobs as killed that were killed before, e.g. by the session of a checkpoint.
+     */
+    public synchronized void addKilledJobs(Collection<Integer> jobs) {
+        killed.addAll(jobs);
+    }
+
+    public JobGroup track(List<Integer> jobs) {
+        return track(jobs, null, null);
+    }
+
+    public JobGroup track(List<Integer> jobs, Listener listener) {
+        return track(jobs, listener, null);
+    }
+
+    public JobGroup track(List<Integer> jobs, Listener listener, CostAccumulator accumulator) {
+        return track(jobs, listener, accumulator, metrics);
+    }
+
+    /**
+     * Starts tracking the given jobs.
+     * @param jobs
+     * @param listener called from the tracker thread whenever results of the jobs are polled, can be null
+     * @param accumulator receives the results of the jobs as they finish, can be null
+     * @param metrics receives the job counters, CPU times and queue waits of the jobs
+     * @return future of the results of the jobs
+     */
+    public JobGroup track(List<Integer> jobs, Listener listener, CostAccumulator accumulator, Metrics metrics) {
+        return track(jobs, Collections.<ExperimentResult>emptyList(), listener, accumulator, metrics);
+    }
+
+    /**
+     * Starts tracking the given jobs, some of which already finished, e.g. the existing runs
+     * of a solver configuration that is evaluated again.
+     * @param finished results of the finished jobs among the given jobs, they are added to
+     * the group right away instead of being polled
+     */
+    public synchronized JobGroup track(List<Integer> jobs, List<ExperimentResult> finished, Listener listener,
+            CostAccumulator accumulator, Metrics metrics) {
+        JobGroup group = new JobGroup(this, jobs, listener, accumulator, metrics);
+        Set<Integer> done = new HashSet<Integer>();
+        for (ExperimentResult result: finished) {
+            group.update(result, true);
+            done.add(result.getId());
+        }
+        if (failure != null) {
+            group.fail(failure);
+            return group;
+        }
+        for (Integer idJob: jobs) {
+            if (!done.contains(idJob)) unfinished.put(idJob, group);
+        }
+        return group;
+    }
+
+    synchronized void untrack(JobGroup group) {
+        for (Integer idJob: group.getJobs()) unfinished.remove(idJob);
+    }
+
+    /**
+     * Kills the given unfinished jobs.
+     * @param runningTime time the running jobs among them already ran
+     */
+    void killJobs(JobGroup group, List<Integer> jobs, float runningTime) throws Exception {
+        group.getMetrics().add("jobs.killed", jobs.size());
+        group.getMetrics().add("cpu.wasted", runningTime);
+        synchronized (this) {
+            killed.addAll(jobs);
+        }
+        for (int idJob: jobs) api.killJob(idJob);
+    }
+
+    /**
+     * Blocks until the next poll round finished or the timeout elapsed.
+     * With a simulated clock the clock is advanced by the poll interval (at most the
+     * timeout) and the poll round is done right away.
+     * @throws ExecutionException if the tracker gave up polling
+     */
+    public void awaitUpdate(long timeout) throws InterruptedException, ExecutionException {
+        if (isSynchronous()) {
+            long interval;
+            synchronized (this) {
+                checkFailure();
+                interval = Math.min(timeout, pollInterval);
+            }
+            ((SimulatedClock) clock).advance(interval);
+            pollRound();
+            synchronized (this) {
+                checkFailure();
+            }
+            return;
+        }
+        synchronized (this) {
+            long round = pollRounds;
+            long deadline = System.currentTimeMillis() + timeout;
+            while (round == pollRounds && running) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) break;
+                wait(remaining);
+            }
+            checkFailure();
+        }
+    }
+
+    private void checkFailure() throws ExecutionException {
+        if (failure != null) throw new ExecutionException("Polling the jobs failed " + MAX_POLL_FAILURES + " times in a row.", failure);
+    }
+
+    /**
+     * Number of jobs that are currently tracked and not finished.
+     */
+    public synchronized int getNumUnfinishedJobs() {
+        return unfinished.size();
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            boolean idle = pollRound();
+            synchronized (this) {
+                try {
+                    if (running) wait(idle ? MIN_POLL_INTERVAL : pollInterval);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Polls all unfinished jobs once, adapts the poll interval and wakes up the waiting threads.
+     * @return true if there were no jobs to poll
+     */
+    private boolean pollRound() {
+        List<Integer> ids;
+        synchronized (this) {
+            ids = new ArrayList<Integer>(unfinished.keySet());
+        }
+        boolean progress = false;
+        if (!ids.isEmpty()) {
+            try {
+                progress = poll(ids);
+                synchronized (this) {
+                    pollFailures = 0;
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+                pollFailed(e);
+            }
+        }
+        synchronized (this) {
+            pollRounds++;
+            long maxInterval = Math.max(MIN_POLL_INTERVAL, Math.min(MAX_POLL_INTERVAL, (long) (expectedRuntime * 1000 / 4)));
+            pollInterval = progress ? pollInterval * 2 / 3 : pollInterval * 3 / 2;
+            pollInterval = Math.max(MIN_POLL_INTERVAL, Math.min(pollInterval, maxInterval));
+            notifyAll();
+        }
+        return ids.isEmpty();
+    }
+
+    /**
+     * Counts the failed poll round and gives up after MAX_POLL_FAILURES failures in a row:
+     * stops polling and fails the groups of the unfinished jobs.
+     */
+    private void pollFailed(Exception e) {
+        Set<JobGroup> groups;
+        synchronized (this) {
+            if (++pollFailures < MAX_POLL_FAILURES || failure != null) return;
+            System.out.println("Polling the jobs failed " + pollFailures + " times in a row, the job tracker gives up.");
+            failure = e;
+            running = false;
+            groups = new LinkedHashSet<JobGroup>(unfinished.values());
+            unfinished.clear();
+        }
+        for (JobGroup group: groups) group.fail(e);
+    }
+
+    /**
+     * Polls the given jobs in batches and hands the results to their groups.
+     * @return true if any of the jobs finished
+     */
+    private boolean poll(List<Integer> ids) throws Exception {
+        boolean progress = false;
+        Set<JobGroup> updated = new LinkedHashSet<JobGroup>();
+        for (int from = 0; from < ids.size(); from += BATCH_SIZE) {
+            List<Integer> batch = ids.subList(from, Math.min(from + BATCH_SIZE, ids.size()));
+            Map<Integer, ExperimentResult> results = api.getJobsByIDs(new ArrayList<Integer>(batch));
+            for (ExperimentResult result: results.values()) {
+                boolean finished = isFinished(result);
+                JobGroup group;
+                synchronized (this) {
+                    group = finished ? unfinished.remove(result.getId()) : unfinished.get(result.getId());
+                    if (group != null && finished) {
+                        expectedRuntime = 0.9f * expectedRuntime + 0.1f * result.getResultTime();
+                    }
+                }
+                if (group == null) continue; // untracked in the meantime
+                if (group.update(result, finished)) {
+                    group.getMetrics().add("jobs.started", 1);
+                    group.getMetrics().add("queue.wait", (clock.currentTimeMillis() - group.getTrackedAt()) / 1000.0);
+                }
+                if (finished) {
+                    group.getMetrics().add("jobs.finished", 1);
+                    group.getMetrics().add("cpu.used", result.getResultTime());
+                }
+                updated.add(group);
+                progress |= finished;
+            }
+        }
+        for (JobGroup group: updated) {
+            if (group.getListener() != null) group.getListener().jobGroupUpdated(group);
+        }
+        return progress;
+    }
+}
@@ -0,0 +1,263 @@
+package edacc.configurator.ga;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.management.ObjectName;
+
+/**
+ * Metrics of a tuning session: timers of the phases of the search and of the
+ * evaluation backend calls, counters (jobs, CPU time, queue wait, cache and
+ * SLS statistics) and the cost distribution of the population of each generation.
+ *
+ * A snapshot of all metrics can be appended as one JSON line to a file after every
+ * generation. The metrics are also available as MBean for live sessions.
+ *
+ * Timer names: "phase.*" for the search phases (breed, surrogate, deduplicate, evaluate, race, intensify, sls),
+ * "backend.*" for the calls of the evaluation backend.
+ * Counter names: "jobs.launched", "jobs.started", "jobs.finished", "jobs.killed",
+ * "cpu.used" and "cpu.wasted" (seconds), "queue.wait" (seconds), "lookup.total",
+ * "lookup.duplicates", "cache.hits", "cache.misses", "sls.neighbours", "sls.accepted",
+ * "intensify.runs" (top-up runs), "intensify.dropped", "jobs.reprioritized", "migration.sent",
+ * "migration.received", "speculation.launched" (children), "speculation.confirmed",
+ * "speculation.rebred", "speculation.abandoned" (matings and children), "dedup.duplicates",
+ * "dedup.mutations", "dedup.unresolved", "diversity.genotypes" (distinct genotypes of the
+ * population), "diversity.distance" (mean distance to the nearest other individual) and
+ * "backend.errors" (failed backend calls).
+ */
+public class Metrics implements MetricsMBean {
+    private static class Timer {
+        long count;
+        long totalNanos;
+        long maxNanos;
+    }
+
+    private final Map<String, Timer> timers = new TreeMap<String, Timer>();
+    private final Map<String, Double> counters = new TreeMap<String, Double>();
+    private int generation = 0;
+    /** min, lower quartile, median, upper quartile, max and mean of the last generation */
+    private float[] costDistribution = null;
+    private int censored = 0;
+    private PrintWriter out = null;
+
+    /**
+     * Adds the duration of one call of the named phase or backend call.
+     */
+    public synchronized void time(String name, long nanos) {
+        Timer timer = timers.get(name);
+        if (timer == null) {
+            timer = new Timer();
+            timers.put(name, timer);
+        }
+        timer.count++;
+        timer.totalNanos += nanos;
+        if (nanos > timer.maxNanos) timer.maxNanos = nanos;
+    }
+
+    /**
+     * Convenience for time(name, System.nanoTime() - start).
+     */
+    public void timeSince(String name, long start) {
+        time(name, System.nanoTime() - start);
+    }
+
+    public synchronized void add(String name, double value) {
+        Double old = counters.get(name);
+        counters.put(name, old == null ? value : old + value);
+    }
+
+    public synchronized void set(String name, double value) {
+        counters.put(name, value);
+    }
+
+    public synchronized double get(String name) {
+        Double value = counters.get(name);
+        return value == null ? 0 : value;
+    }
+
+    /**
+     * Records the cost distribution of the population of the given generation
+     * and appends a snapshot of all metrics to the output file.
+     */
+    public void recordGeneration(int generation, List<Individual> population) {
+        List<Float> costs = new ArrayList<Float>();
+        int censored = 0;
+        for (Individual ind: population) {
+            if (ind.getCost() == null) continue;
+            costs.add(ind.getCost());
+            if (ind.isCensored()) censored++;
+        }
+        Collections.sort(costs);
+        synchronized (this) {
+            this.generation = generation;
+            this.censored = censored;
+            if (costs.isEmpty()) {
+                costDistribution = null;
+            } else {
+                float sum = 0;
+                for (float cost: costs) sum += cost;
+                costDistribution = new float[] {costs.get(0), quantile(costs, 0.25f), quantile(costs, 0.5f),
+                        quantile(costs, 0.75f), costs.get(costs.size() - 1), sum / costs.size()};
+            }
+            if (out != null) {
+                out.println(toJSON());
+                out.flush();
+            }
+        }
+    }
+
+    private static float quantile(List<Float> sorted, float q) {
+        float pos = q * (sorted.size() - 1);
+        int i = (int) pos;
+        if (i + 1 >= sorted.size()) return sorted.get(i);
+        return sorted.get(i) + (pos - i) * (sorted.get(i + 1) - sorted.get(i));
+    }
+
+    /**
+     * Appends the snapshots to the given file.
+     */
+    public synchronized void setOutput(File file) throws IOException {
+        close();
+        out = new PrintWriter(new FileWriter(file, true));
+    }
+
+    public synchronized void close() {
+        if (out != null) out.close();
+        out = null;
+    }
+
+    public void registerMBean(int idExperiment) throws Exception {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+                new ObjectName("edacc.configurator.ga:type=Metrics,experiment=" + idExperiment));
+    }
+
+    /**
+     * @return snapshot of all metrics as single line JSON object
+     */
+    public synchronized String toJSON() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"time\":").append(System.currentTimeMillis());
+        sb.append(",\"generation\":").append(generation);
+        if (costDistribution != null) {
+            String[] names = {"min", "q1", "median", "q3", "max", "mean"};
+            sb.append(",\"cost\":{");
+            for (int i = 0; i < names.length; i++) {
+                sb.append('"').append(names[i]).append("\":").append(number(costDistribution[i])).append(',');
+            }
+            sb.append("\"censored\":").append(censored).append('}');
+        }
+        sb.append(",\"timers\":{");
+        boolean first = true;
+        for (Map.Entry<String, Timer> e: timers.entrySet()) {
+            if (!first) sb.append(',');
+            first = false;
+            Timer timer = e.getValue();
+            sb.append('"').append(e.getKey()).append("\":{\"count\":").append(timer.count)
+              .append(",\"total_ms\":").append(number(timer.totalNanos / 1e6))
+              .append(",\"max_ms\":").append(number(timer.maxNanos / 1e6)).append('}');
+        }
+        sb.append("},\"counters\":{");
+        first = true;
+        for (Map.Entry<String, Double> e: counters.entrySet()) {
+            if (!first) sb.append(',');
+            first = false;
+            sb.append('"').append(e.getKey()).append("\":").append(number(e.getValue()));
+        }
+        sb.append("}}");
+        return sb.toString();
+    }
+
+    private static String number(double x) {
+        if (Double.isNaN(x) || Double.isInfinite(x)) return "null";
+        return String.format(Locale.US, "%.3f", x);
+    }
+
+    private double ratio(String numerator, String denominator) {
+        double d = get(denominator);
+        return d == 0 ? 0 : get(numerator) / d;
+    }
+
+    @Override
+    public synchronized int getGeneration() {
+        return generation;
+    }
+
+    @Override
+    public synchronized float getBestCost() {
+        return costDistribution == null ? Float.NaN : costDistribution[0];
+    }
+
+    @Override
+    public synchronized float getMedianCost() {
+        return costDistribution == null ? Float.NaN : costDistribution[2];
+    }
+
+    @Override
+    public double getSolverCPUTime() {
+        return get("cpu.used");
+    }
+
+    @Override
+    public double getWastedCPUTime() {
+        return get("cpu.wasted");
+    }
+
+    @Override
+    public synchronized double getAverageQueueWait() {
+        return ratio("queue.wait", "jobs.started");
+    }
+
+    @Override
+    public synchronized double getBackendTime() {
+        long nanos = 0;
+        for (Map.Entry<String, Timer> e: timers.entrySet()) {
+            if (e.getKey().startsWith("backend.")) nanos += e.getValue().totalNanos;
+        }
+        return nanos / 1e9;
+    }
+
+    @Override
+    public synchronized double getCacheHitRate() {
+        double lookups = get("cache.hits") + get("cache.misses");
+        return lookups == 0 ? 0 : get("cache.hits") / lookups;
+    }
+
+    @Override
+    public synchronized double getDuplicateRate() {
+        return ratio("lookup.duplicates", "lookup.total");
+    }
+
+    @Override
+    public synchronized double getSLSAcceptanceRate() {
+        return ratio("sls.accepted", "sls.neighbours");
+    }
+
+    @Override
+    public synchronized String[] getTimers() {
+        List<String> lines = new ArrayList<String>();
+        for (Map.Entry<String, Timer> e: timers.entrySet()) {
+            Timer timer = e.getValue();
+            lines.add(String.format(Locale.US, "%s %d %.3f %.3f", e.getKey(), timer.count,
+                    timer.totalNanos / 1e6, timer.maxNanos / 1e6));
+        }
+        return lines.toArray(new String[lines.size()]);
+    }
+
+    @Override
+    public synchronized String[] getCounters() {
+        List<String> lines = new ArrayList<String>();
+        for (Map.Entry<String, Double> e: counters.entrySet()) {
+            lines.add(String.format(Locale.US, "%s %.3f", e.getKey(), e.getValue()));
+        }
+        return lines.toArray(new String[lines.size()]);
+    }
+}
@@ -0,0 +1,37 @@
+package edacc.configurator.ga;
+
+/**
+ * JMX view of the metrics of a running tuning session.
+ */
+public interface MetricsMBean {
+    public int getGeneration();
+
+    public float getBestCost();
+
+    public float getMedianCost();
+
+    /** CPU time in seconds used by finished jobs */
+    public double getSolverCPUTime();
+
+    /** CPU time in seconds the killed jobs had used when they were killed */
+    public double getWastedCPUTime();
+
+    /** average time in seconds between launching a job and seeing it started */
+    public double getAverageQueueWait();
+
+    /** total time in seconds spent in evaluation backend calls */
+    public double getBackendTime();
+
+    public double getCacheHitRate();
+
+    /** fraction of the looked up configurations that already existed */
+    public double getDuplicateRate();
+
+    public double getSLSAcceptanceRate();
+
+    /** all timers, one "name count total_ms max_ms" line each */
+    public String[] getTimers();
+
+    /** all counters, one "name value" line each */
+    public String[] getCounters();
+}
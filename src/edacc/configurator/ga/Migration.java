@@ -0,0 +1,156 @@
+package edacc.configurator.ga;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import edacc.parameterspace.graph.ParameterGraph;
+
+/**
+ * Exchange of individuals between the islands of an island model GA. The islands are
+ * configurator processes (possibly on different hosts) that evolve their own population
+ * against the same experiment and share a migration directory, e.g. on a network file system.
+ *
+ * The islands form a ring: every interval generations each island writes its best
+ * individuals to the file island-<island>-<generation>.migrants of the directory and
+ * takes in the individuals of the newest file of the previous island that it didn't
+ * read yet. The exchange is asynchronous, no island waits for another.
+ *
+ * Each line of a file is the cost of an individual followed by its encoded configuration
+ * (see ConfigurationCodec), separated by a tab. Files are written to a temporary file
+ * first and then renamed, so the other islands never read partial files.
+ */
+public class Migration {
+    private static final String SUFFIX = ".migrants";
+
+    private final File directory;
+    private final int island;
+    private final int numIslands;
+    private final int interval;
+    private final int migrants;
+    private final Metrics metrics;
+    /** generation of the last file of the previous island that was read */
+    private int lastReceived = 0;
+
+    /**
+     * @param directory migration directory shared by all islands
+     * @param island number of this island, 0 to numIslands - 1
+     * @param numIslands
+     * @param interval number of generations between two migrations
+     * @param migrants number of individuals each island sends per migration
+     * @param metrics receives the numbers of sent and received individuals ("migration.sent", "migration.received")
+     */
+    public Migration(File directory, int island, int numIslands, int interval, int migrants, Metrics metrics) {
+        if (island < 0 || island >= numIslands) throw new IllegalArgumentException("The island has to be between 0 and " + (numIslands - 1) + ".");
+        this.directory = directory;
+        this.island = island;
+        this.numIslands = numIslands;
+        this.interval = Math.max(1, interval);
+        this.migrants = migrants;
+        this.metrics = metrics;
+        directory.mkdirs();
+    }
+
+    public int getIsland() {
+        return island;
+    }
+
+    /**
+     * @return true if the islands exchange individuals after the given generation
+     */
+    public boolean isDue(int generation) {
+        return numIslands > 1 && generation % interval == 0;
+    }
+
+    /**
+     * Writes the best individuals of the population for the next island and removes
+     * the older files of this island.
+     */
+    public void emigrate(List<Individual> population, int generation) throws IOException {
+        List<Individual> evaluated = new ArrayList<Individual>();
+        for (Individual ind: population) {
+            if (ind.getCost() != null && !ind.isCensored()) evaluated.add(ind);
+        }
+        Collections.sort(evaluated);
+        File file = new File(directory, "island-" + island + "-" + generation + SUFFIX);
+        File tmp = new File(directory, file.getName() + ".tmp");
+        PrintWriter out = new PrintWriter(new FileWriter(tmp));
+        int sent = 0;
+        try {
+            for (Individual ind: evaluated) {
+                if (sent == migrants) break;
+                out.println(String.format(Locale.US, "%f", ind.getCost()) + "\t" + ConfigurationCodec.encode(ind.getConfig()));
+                sent++;
+            }
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(file)) {
+            file.delete();
+            if (!tmp.renameTo(file)) throw new IOException("Couldn't write migration file " + file);
+        }
+        for (File old: files(island)) {
+            if (generation(old) < generation) old.delete();
+        }
+        metrics.add("migration.sent", sent);
+        System.out.println("island " + island + " sent " + sent + " individuals");
+    }
+
+    /**
+     * Reads the newest individuals of the previous island. The individuals only have
+     * a configuration, they still have to be evaluated (or looked up) by this island.
+     * @return empty list if the previous island didn't send new individuals
+     */
+    public List<Individual> immigrate(ParameterGraph pspace) throws Exception {
+        List<Individual> immigrants = new ArrayList<Individual>();
+        File newest = null;
+        for (File file: files((island + numIslands - 1) % numIslands)) {
+            if (generation(file) > lastReceived && (newest == null || generation(file) > generation(newest))) newest = file;
+        }
+        if (newest == null) return immigrants;
+        BufferedReader in;
+        try {
+            in = new BufferedReader(new FileReader(newest));
+        } catch (IOException e) {
+            // the other island replaced the file in the meantime
+            return immigrants;
+        }
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.length() == 0) continue;
+                String[] fields = line.split("\t", 2);
+                immigrants.add(new Individual(ConfigurationCodec.decode(pspace, fields[1])));
+            }
+        } finally {
+            in.close();
+        }
+        lastReceived = generation(newest);
+        metrics.add("migration.received", immigrants.size());
+        System.out.println("island " + island + " received " + immigrants.size() + " individuals from " + newest.getName());
+        return immigrants;
+    }
+
+    private List<File> files(int island) {
+        List<File> files = new ArrayList<File>();
+        File[] all = directory.listFiles();
+        if (all == null) return files;
+        String prefix = "island-" + island + "-";
+        for (File file: all) {
+            if (file.getName().startsWith(prefix) && file.getName().endsWith(SUFFIX)) files.add(file);
+        }
+        return files;
+    }
+
+    private static int generation(File file) {
+        String name = file.getName();
+        return Integer.valueOf(name.substring(name.lastIndexOf('-') + 1, name.length() - SUFFIX.length()));
+    }
+}
@@ -0,0 +1,110 @@
+package edacc.configurator.ga;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Offspring of the next generation that are bred while the current generation is still
+ * being evaluated, raced, intensified and improved by the SLS (pipelining = 1 in
+ * generational mode). The cluster doesn't have to wait for the host to breed and launch
+ * the next generation, and the host prepares the next generation while the cluster runs
+ * the stragglers of the current one.
+ *
+ * The next generation consists of populationSize / 2 matings. The two tournaments of a
+ * mating are drawn right away, its parents are the winners under the provisional costs of
+ * the population (final costs, or the cost of the finished runs of running individuals).
+ * As soon as all members of both tournaments have a provisional cost the children are
+ * bred; they are speculative until the costs are final. Speculative children are launched
+ * whenever the cores of the experiment have free capacity.
+ *
+ * When the generation is evaluated, the tournaments of all matings are decided again with
+ * the final costs. Matings whose winners are unchanged keep their children (and their
+ * runs), the others are bred again from the actual winners. So the next generation is
+ * distributed exactly as without pipelining; mispredicted children only cost cluster time.
+ */
+public class OffspringPipeline {
+    /** two children of the next generation and the tournaments of their parents */
+    static class Mating {
+        final int[] tournament1;
+        final int[] tournament2;
+        /** provisional winners of the tournaments and the keys of their configurations when the children were bred */
+        Individual parent1, parent2;
+        String parentKey1, parentKey2;
+        /** null until the children were bred */
+        List<Individual> children = null;
+        /** true if the children are copies of the parents (no crossover), which are only created when confirmed */
+        boolean copies = false;
+
+        Mating(int[] tournament1, int[] tournament2) {
+            this.tournament1 = tournament1;
+            this.tournament2 = tournament2;
+        }
+    }
+
+    private List<Individual> population = null;
+    private Map<Individual, JobGroup> running = Collections.emptyMap();
+    private final List<Mating> matings = new ArrayList<Mating>();
+    /** launched speculative children and their jobs */
+    private final Map<Individual, JobGroup> launched = new IdentityHashMap<Individual, JobGroup>();
+    /** children that were considered for a launch */
+    private final Set<Individual> checked = Collections.newSetFromMap(new IdentityHashMap<Individual, Boolean>());
+
+    /**
+     * Starts the pipeline of the generation after the given population.
+     */
+    void start(List<Individual> population) {
+        this.population = population;
+        this.running = Collections.emptyMap();
+    }
+
+    /**
+     * @param running individuals of the population that are being evaluated and their jobs
+     */
+    void setRunning(Map<Individual, JobGroup> running) {
+        this.running = running;
+    }
+
+    /**
+     * @return the population whose offspring are bred, null if the pipeline isn't started
+     */
+    List<Individual> getPopulation() {
+        return population;
+    }
+
+    JobGroup getRunning(Individual ind) {
+        return running.get(ind);
+    }
+
+    List<Mating> getMatings() {
+        return matings;
+    }
+
+    /**
+     * @return false if the child was already considered for a launch
+     */
+    boolean check(Individual child) {
+        return checked.add(child);
+    }
+
+    void launched(Individual child, JobGroup group) {
+        launched.put(child, group);
+    }
+
+    /**
+     * Ends the pipeline of the generation.
+     * @return the launched children and their jobs, the caller takes care of them
+     */
+    Map<Individual, JobGroup> finish() {
+        Map<Individual, JobGroup> result = new IdentityHashMap<Individual, JobGroup>(launched);
+        population = null;
+        running = Collections.emptyMap();
+        matings.clear();
+        launched.clear();
+        checked.clear();
+        return result;
+    }
+}
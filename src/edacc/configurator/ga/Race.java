@@ -0,0 +1,208 @@
+package edacc.configurator.ga;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import edacc.api.costfunctions.CostFunction;
+import edacc.model.ExperimentResult;
+import edacc.model.StatusCode;
+
+/**
+ * F-race style racing of the individuals that are evaluated in one generation.
+ *
+ * The individuals are compared on the instance/seed pairs that all of them have finished
+ * (the blocks). The per-run costs of each block are ranked and the Friedman test decides
+ * whether there are significant differences. If there are, every individual whose rank sum
+ * differs significantly from the best rank sum (Conover's post-hoc test) is eliminated.
+ *
+ * See Birattari et al.: A Racing Algorithm for Configuring Metaheuristics (GECCO 2002).
+ */
+public class Race {
+    /** only used for the costs of single runs */
+    private final CostAccumulator runCost;
+    private final float alpha;
+    private final int minBlocks;
+    private final Map<Individual, JobGroup> alive = new LinkedHashMap<Individual, JobGroup>();
+
+    /**
+     * @param costFunction used to calculate the cost of single runs
+     * @param alpha significance level of the tests
+     * @param minBlocks minimum number of common instance/seed pairs before individuals are eliminated
+     */
+    public Race(CostFunction costFunction, float alpha, int minBlocks) {
+        this.runCost = CostAccumulator.create(costFunction);
+        this.alpha = alpha;
+        this.minBlocks = Math.max(2, minBlocks);
+    }
+
+    public void add(Individual ind, JobGroup jobs) {
+        alive.put(ind, jobs);
+    }
+
+    public int getNumAlive() {
+        return alive.size();
+    }
+
+    /**
+     * Runs the tests on the instance/seed pairs all remaining individuals have finished
+     * and removes the individuals that are dominated from the race.
+     * Their jobs aren't killed.
+     * @return the eliminated individuals
+     */
+    public List<Individual> update() {
+        List<Individual> eliminated = new ArrayList<Individual>();
+        int k = alive.size();
+        if (k < 2) return eliminated;
+
+        // per-run costs of the finished runs of each individual by instance/seed pair
+        List<Individual> candidates = new ArrayList<Individual>(alive.keySet());
+        List<Map<Long, Float>> costs = new ArrayList<Map<Long, Float>>();
+        for (Individual ind: candidates) {
+            Map<Long, Float> runCosts = new HashMap<Long, Float>();
+            for (ExperimentResult result: alive.get(ind).getResults()) {
+                if (!JobTracker.isFinished(result)) continue;
+                runCosts.put(block(result), runCost.runCost(result));
+            }
+            costs.add(runCosts);
+        }
+        List<Long> blocks = new ArrayList<Long>(costs.get(0).keySet());
+        for (int j = 1; j < k; j++) blocks.retainAll(costs.get(j).keySet());
+        int n = blocks.size();
+        if (n < minBlocks) return eliminated;
+
+        // rank the candidates in each block, ties get the average rank
+        double[] rankSums = new double[k];
+        double sumSquaredRanks = 0;
+        for (Long block: blocks) {
+            float[] blockCosts = new float[k];
+            for (int j = 0; j < k; j++) blockCosts[j] = costs.get(j).get(block);
+            double[] ranks = ranks(blockCosts);
+            for (int j = 0; j < k; j++) {
+                rankSums[j] += ranks[j];
+                sumSquaredRanks += ranks[j] * ranks[j];
+            }
+        }
+
+        double a = sumSquaredRanks - n * k * (k + 1) * (k + 1) / 4.0;
+        if (a <= 0) return eliminated; // all blocks are ties
+        double numerator = 0;
+        for (int j = 0; j < k; j++) numerator += Math.pow(rankSums[j] - n * (k + 1) / 2.0, 2);
+        double t = (k - 1) * numerator / a;
+        if (t <= chiSquareQuantile(1 - alpha, k - 1)) return eliminated;
+
+        int best = 0;
+        for (int j = 1; j < k; j++) {
+            if (rankSums[j] < rankSums[best]) best = j;
+        }
+        int df = (n - 1) * (k - 1);
+        double criticalDifference = tQuantile(1 - alpha / 2, df)
+                * Math.sqrt(2 * n * (1 - t / (n * (k - 1))) * a / df);
+        for (int j = 0; j < k; j++) {
+            if (rankSums[j] - rankSums[best] > criticalDifference) {
+                eliminated.add(candidates.get(j));
+                alive.remove(candidates.get(j));
+            }
+        }
+        return eliminated;
+    }
+
+    private static Long block(ExperimentResult result) {
+        return ((long) result.getInstanceId() << 32) | (result.getSeed() & 0xffffffffL);
+    }
+
+    /**
+     * Ranks starting at 1, tied values get the average of their ranks.
+     */
+    static double[] ranks(float[] values) {
+        int k = values.length;
+        double[] ranks = new double[k];
+        for (int j = 0; j < k; j++) {
+            int less = 0, equal = 0;
+            for (int h = 0; h < k; h++) {
+                if (values[h] < values[j]) less++;
+                else if (values[h] == values[j]) equal++;
+            }
+            ranks[j] = less + (equal + 1) / 2.0;
+        }
+        return ranks;
+    }
+
+    /**
+     * Censored cost of an eliminated individual: the cumulated cost of its finished runs
+     * plus the time its running jobs already ran, averaged over all started runs.
+     * This is a lower bound on what the started runs would have cost.
+     */
+    public static float censoredCost(CostFunction costFunction, List<ExperimentResult> results) {
+        List<ExperimentResult> finished = new ArrayList<ExperimentResult>();
+        float runningTime = 0;
+        int started = 0;
+        for (ExperimentResult result: results) {
+            if (JobTracker.isFinished(result)) {
+                finished.add(result);
+                started++;
+            } else if (result.getStatus().equals(StatusCode.RUNNING)) {
+                runningTime += result.getRunningTime();
+                started++;
+            }
+        }
+        if (started == 0) return 0;
+        return (costFunction.calculateCumulatedCost(finished) + runningTime) / started;
+    }
+
+    /**
+     * Censored cost of the jobs of a group, see censoredCost(CostFunction, List).
+     * The group must have a cost accumulator.
+     */
+    public static float censoredCost(JobGroup group) {
+        int started = group.getNumFinished() + group.getNumRunning();
+        if (started == 0) return 0;
+        return (group.getAccumulator().getCumulatedCost() + group.getRunningTime()) / started;
+    }
+
+    /**
+     * Quantile of the standard normal distribution (Acklam's rational approximation).
+     */
+    static double normalQuantile(double p) {
+        final double[] a = {-3.969683028665376e+01, 2.209460984245205e+02, -2.759285104469687e+02,
+                1.383577518672690e+02, -3.066479806614716e+01, 2.506628277459239e+00};
+        final double[] b = {-5.447609879822406e+01, 1.615858368580409e+02, -1.556989798598866e+02,
+                6.680131188771972e+01, -1.328068155288572e+01};
+        final double[] c = {-7.784894002430293e-03, -3.223964580411365e-01, -2.400758277161838e+00,
+                -2.549732539343734e+00, 4.374664141464968e+00, 2.938163982698783e+00};
+        final double[] d = {7.784695709041462e-03, 3.224671290700398e-01, 2.445134137142996e+00,
+                3.754408661907416e+00};
+        if (p < 0.02425) {
+            double q = Math.sqrt(-2 * Math.log(p));
+            return (((((c[0] * q + c[1]) * q + c[2]) * q + c[3]) * q + c[4]) * q + c[5])
+                    / ((((d[0] * q + d[1]) * q + d[2]) * q + d[3]) * q + 1);
+        }
+        if (p > 1 - 0.02425) return -normalQuantile(1 - p);
+        double q = p - 0.5;
+        double r = q * q;
+        return (((((a[0] * r + a[1]) * r + a[2]) * r + a[3]) * r + a[4]) * r + a[5]) * q
+                / (((((b[0] * r + b[1]) * r + b[2]) * r + b[3]) * r + b[4]) * r + 1);
+    }
+
+    /**
+     * Quantile of the chi-square distribution (Wilson-Hilferty approximation).
+     */
+    static double chiSquareQuantile(double p, int df) {
+        double z = normalQuantile(p);
+        double h = 2.0 / (9.0 * df);
+        return df * Math.pow(1 - h + z * Math.sqrt(h), 3);
+    }
+
+    /**
+     * Quantile of Student's t distribution (Cornish-Fisher expansion).
+     */
+    static double tQuantile(double p, int df) {
+        double z = normalQuantile(p);
+        double z3 = z * z * z, z5 = z3 * z * z, z7 = z5 * z * z;
+        return z + (z3 + z) / (4.0 * df)
+                + (5 * z5 + 16 * z3 + 3 * z) / (96.0 * df * df)
+                + (3 * z7 + 19 * z5 + 17 * z3 - 15 * z) / (384.0 * df * df * df);
+    }
+}
@@ -0,0 +1,256 @@
+package edacc.configurator.ga;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Scanner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import edacc.api.APIImpl;
+import edacc.configurator.ga.backend.ReplayBackend;
+import edacc.configurator.ga.backend.ReplayLog;
+import edacc.parameterspace.graph.ParameterGraph;
+
+/**
+ * Offline comparison of GA settings: replays the recorded runs of a run history (see
+ * RunHistory, ReplayLog) for every combination of the given settings and seeds, on a
+ * simulated cluster with a simulated clock (see ReplayBackend). A replayed session takes
+ * seconds instead of days and is deterministic, so the settings can be tuned before the
+ * cluster is spent on them.
+ *
+ * Configuration file (same format as the session files):
+ * runHistoryFile, idExperiment - the recorded runs
+ * parameterGraph - XML file of the parameter graph of the solver
+ * cores - number of cores of the simulated cluster
+ * threads - number of sessions that are replayed in parallel
+ * seeds - comma separated seeds, every combination is replayed with each seed
+ * populationSize, tournamentSize, crossoverProbability, mutationProbability,
+ * mutationStandardDeviationFactor - comma separated values to compare
+ * jobCPUTimeLimit, maxTerminationCriterionHits, use2PointCrossover, steadyState, racing,
+ * intensification, jobPriorities, pipelining, deduplication, duplicateDistance, crowding,
+ * crowdingWindow - fixed settings of all replayed sessions
+ * replayLog - file the output of the replayed sessions is written to (default: discarded)
+ */
+public class Replay {
+    private static class Variant {
+        int populationSize;
+        int tournamentSize;
+        float crossoverProbability;
+        float mutationProbability;
+        float mutationStandardDeviationFactor;
+        long seed;
+        Float cost = null;
+        int generation;
+        double hours;
+        double jobs;
+
+        String settings() {
+            return String.format(Locale.US, "populationSize=%d tournamentSize=%d crossoverProbability=%s "
+                    + "mutationProbability=%s mutationStandardDeviationFactor=%s seed=%d", populationSize, tournamentSize,
+                    crossoverProbability, mutationProbability, mutationStandardDeviationFactor, seed);
+        }
+
+        String summary() {
+            return String.format(Locale.US, "%s: cost %s after %d generations, %.1f simulated hours, %.0f jobs",
+                    settings(), cost, generation, hours, jobs);
+        }
+    }
+
+    private final ReplayLog log;
+    private final int cores;
+    private int jobCPUTimeLimit = 13;
+    private int maxTerminationCriterionHits = 4;
+    private boolean use2PointCrossover = false;
+    private boolean steadyState = false;
+    private boolean racing = false;
+    private boolean intensification = false;
+    private boolean jobPriorities = false;
+    private boolean pipelining = false;
+    private boolean deduplication = false;
+    private float duplicateDistance = 0;
+    private boolean crowding = false;
+    private int crowdingWindow = 0;
+
+    /**
+     * @param log recorded runs
+     * @param cores number of cores of the simulated cluster
+     */
+    public Replay(ReplayLog log, int cores) {
+        this.log = log;
+        this.cores = cores;
+    }
+
+    public static void main(String... args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Missing replay configuration file. Use java -cp GA.jar edacc.configurator.ga.Replay <replay config file path>");
+            return;
+        }
+        Scanner scanner = new Scanner(new File(args[0]));
+        String runHistoryFile = null, parameterGraph = null, replayLog = null;
+        int idExperiment = 0;
+        int cores = 64;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String seeds = "1", populationSizes = "42", tournamentSizes = "4", crossoverProbabilities = "0.8",
+                mutationProbabilities = "0.05", mutationStandardDeviationFactors = "0.05";
+        List<String[]> fixed = new ArrayList<String[]>();
+        while (scanner.hasNextLine()) {
+            String line = scanner.nextLine();
+            if (line.trim().startsWith("%")) continue;
+            String[] keyval = line.split("=");
+            String key = keyval[0].trim();
+            String value = keyval[1].trim();
+            if ("runHistoryFile".equals(key)) runHistoryFile = value;
+            else if ("parameterGraph".equals(key)) parameterGraph = value;
+            else if ("idExperiment".equals(key)) idExperiment = Integer.valueOf(value);
+            else if ("cores".equals(key)) cores = Integer.valueOf(value);
+            else if ("threads".equals(key)) threads = Integer.valueOf(value);
+            else if ("replayLog".equals(key)) replayLog = value;
+            else if ("seeds".equals(key)) seeds = value;
+            else if ("populationSize".equals(key)) populationSizes = value;
+            else if ("tournamentSize".equals(key)) tournamentSizes = value;
+            else if ("crossoverProbability".equals(key)) crossoverProbabilities = value;
+            else if ("mutationProbability".equals(key)) mutationProbabilities = value;
+            else if ("mutationStandardDeviationFactor".equals(key)) mutationStandardDeviationFactors = value;
+            else fixed.add(new String[] {key, value});
+        }
+        scanner.close();
+        if (runHistoryFile == null || parameterGraph == null) {
+            System.out.println("The replay needs a runHistoryFile and a parameterGraph.");
+            return;
+        }
+        ParameterGraph pspace = new APIImpl().loadParameterGraphFromFile(parameterGraph);
+        if (pspace == null) throw new Exception("Couldn't load parameter graph from " + parameterGraph);
+        RunHistory history = new RunHistory(new File(runHistoryFile), idExperiment);
+        ReplayLog log;
+        try {
+            log = new ReplayLog(pspace, history);
+        } finally {
+            history.close();
+        }
+        System.out.println("loaded " + history.size() + " runs of " + log.getNumConfigurations()
+                + " configurations, course of " + log.getCourseLength() + " instance/seed pairs");
+
+        Replay replay = new Replay(log, cores);
+        for (String[] keyval: fixed) {
+            String key = keyval[0], value = keyval[1];
+            if ("jobCPUTimeLimit".equals(key)) replay.jobCPUTimeLimit = Integer.valueOf(value);
+            else if ("maxTerminationCriterionHits".equals(key)) replay.maxTerminationCriterionHits = Integer.valueOf(value);
+            else if ("use2PointCrossover".equals(key)) replay.use2PointCrossover = Integer.valueOf(value) == 1;
+            else if ("steadyState".equals(key)) replay.steadyState = Integer.valueOf(value) == 1;
+            else if ("racing".equals(key)) replay.racing = Integer.valueOf(value) == 1;
+            else if ("intensification".equals(key)) replay.intensification = Integer.valueOf(value) == 1;
+            else if ("jobPriorities".equals(key)) replay.jobPriorities = Integer.valueOf(value) == 1;
+            else if ("pipelining".equals(key)) replay.pipelining = Integer.valueOf(value) == 1;
+            else if ("deduplication".equals(key)) replay.deduplication = Integer.valueOf(value) == 1;
+            else if ("duplicateDistance".equals(key)) replay.duplicateDistance = Float.valueOf(value);
+            else if ("crowding".equals(key)) replay.crowding = Integer.valueOf(value) == 1;
+            else if ("crowdingWindow".equals(key)) replay.crowdingWindow = Integer.valueOf(value);
+        }
+
+        List<Variant> variants = new ArrayList<Variant>();
+        for (String populationSize: populationSizes.split(","))
+        for (String tournamentSize: tournamentSizes.split(","))
+        for (String crossoverProbability: crossoverProbabilities.split(","))
+        for (String mutationProbability: mutationProbabilities.split(","))
+        for (String mutationStandardDeviationFactor: mutationStandardDeviationFactors.split(","))
+        for (String seed: seeds.split(",")) {
+            Variant v = new Variant();
+            v.populationSize = Integer.valueOf(populationSize.trim());
+            v.tournamentSize = Integer.valueOf(tournamentSize.trim());
+            v.crossoverProbability = Float.valueOf(crossoverProbability.trim());
+            v.mutationProbability = Float.valueOf(mutationProbability.trim());
+            v.mutationStandardDeviationFactor = Float.valueOf(mutationStandardDeviationFactor.trim());
+            v.seed = Long.valueOf(seed.trim());
+            variants.add(v);
+        }
+
+        // the replayed sessions print their progress, which goes to the replay log
+        PrintStream console = System.out;
+        PrintStream sessionOut = new PrintStream(replayLog == null ? new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+        } : new FileOutputStream(replayLog), true);
+        System.setOut(sessionOut);
+        try {
+            replay.run(variants, threads, console);
+        } finally {
+            System.setOut(console);
+            sessionOut.close();
+        }
+
+        Collections.sort(variants, new Comparator<Variant>() {
+            @Override
+            public int compare(Variant a, Variant b) {
+                if (a.cost == null || b.cost == null) return a.cost == null ? (b.cost == null ? 0 : 1) : -1;
+                return a.cost.compareTo(b.cost);
+            }
+        });
+        System.out.println("ranking of " + variants.size() + " replayed sessions:");
+        for (int i = 0; i < variants.size(); i++) System.out.println((i + 1) + ". " + variants.get(i).summary());
+    }
+
+    /**
+     * Replays the sessions of the variants with the given number of threads.
+     * @param console receives the summary of each session when it terminated
+     */
+    private void run(List<Variant> variants, int threads, final PrintStream console) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (final Variant v: variants) {
+            futures.add(executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        replay(v);
+                        console.println(v.summary());
+                    } catch (Exception e) {
+                        console.println(v.settings() + ": replay failed");
+                        e.printStackTrace(console);
+                    }
+                }
+            }));
+        }
+        try {
+            for (Future<?> future: futures) future.get();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Replays one session of the variant and stores its result in it.
+     */
+    private void replay(Variant v) throws Exception {
+        SimulatedClock clock = new SimulatedClock();
+        ReplayBackend backend = new ReplayBackend(log, cores, clock);
+        JobTracker tracker = new JobTracker(backend, jobCPUTimeLimit, new Metrics(), clock);
+        GAConfigurator ga = new GAConfigurator(backend, tracker, 0, v.populationSize, v.tournamentSize,
+                v.crossoverProbability, v.mutationProbability, v.mutationStandardDeviationFactor,
+                maxTerminationCriterionHits, 0, jobCPUTimeLimit, v.seed, use2PointCrossover, false);
+        ga.setSteadyState(steadyState);
+        ga.setRacing(racing, 0.05f, 5);
+        ga.setIntensification(intensification, 5);
+        if (jobPriorities) ga.setJobPriorities(300);
+        ga.setPipelining(pipelining);
+        ga.setDeduplication(deduplication, duplicateDistance, 5);
+        ga.setCrowding(crowding, crowdingWindow);
+        try {
+            ga.run();
+        } finally {
+            ga.shutdown();
+        }
+        v.cost = ga.getGlobalBest() == null ? null : ga.getGlobalBest().getCost();
+        v.generation = ga.getGeneration();
+        v.hours = clock.currentTimeMillis() / 3600000.0;
+        v.jobs = ga.getMetrics().get("jobs.launched");
+    }
+}
@@ -0,0 +1,317 @@
+package edacc.configurator.ga;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edacc.api.costfunctions.CostFunction;
+import edacc.configurator.ga.backend.LocalExperimentResult;
+import edacc.model.ExperimentResult;
+import edacc.parameterspace.ParameterConfiguration;
+
+/**
+ * Append-only store of all finished runs of the tuning sessions of an experiment. Each run
+ * is one entry with the job ID, solver configuration, instance, seed, status and result code,
+ * CPU time, CPU time limit and the cost of the run under the cost function of the session.
+ *
+ * The entries are stored column-wise in a memory-mapped file: the file consists of segments
+ * of SEGMENT_RUNS runs, every segment holds one int or float array per column. Only the
+ * mapped pages that are accessed are kept in memory by the operating system, the heap only
+ * holds one bit per job ID to skip runs that were already added and the run numbers of each
+ * solver configuration (one int per run). The file survives the session, a later session of
+ * the same experiment continues it.
+ *
+ * Costs of any cost function over any subset of instances are recomputed from the columns,
+ * with the accumulators of the cost functions (see CostAccumulator). The costs of a single
+ * solver configuration only read its own runs.
+ *
+ * The parameter configurations of the solver configurations are appended to a text file
+ * next to the history (<file>.configs, one ID and encoded configuration per line), so the
+ * recorded runs can be replayed without the database (see ReplayBackend).
+ */
+public class RunHistory {
+    private static final int FILE_VERSION = 1;
+    /** version, experiment ID and number of runs */
+    private static final int HEADER_SIZE = 12;
+    private static final int SEGMENT_RUNS = 1 << 16;
+    private static final int JOB = 0, SOLVER_CONFIG = 1, INSTANCE = 2, SEED = 3, STATUS = 4,
+            RESULT_CODE = 5, RESULT_TIME = 6, CPU_TIME_LIMIT = 7, COST = 8;
+    private static final int COLUMNS = 9;
+    private static final long SEGMENT_SIZE = (long) COLUMNS * SEGMENT_RUNS * 4;
+
+    private final int idExperiment;
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private final List<MappedByteBuffer> segments = new ArrayList<MappedByteBuffer>();
+    private int size;
+    /** IDs of the jobs of the stored runs */
+    private final BitSet jobs = new BitSet();
+    /** run numbers of each solver configuration */
+    private final Map<Integer, RunList> configRuns = new HashMap<Integer, RunList>();
+    private final File configsFile;
+    /** IDs of the solver configurations in the configs file */
+    private final BitSet configs = new BitSet();
+    private PrintWriter configsOut = null;
+
+    /**
+     * Opens the run history of the given file, the file is created if it doesn't exist.
+     * @throws IOException if the file is of another version or experiment
+     */
+    public RunHistory(File path, int idExperiment) throws IOException {
+        this.idExperiment = idExperiment;
+        boolean exists = path.exists() && path.length() >= HEADER_SIZE;
+        file = new RandomAccessFile(path, "rw");
+        channel = file.getChannel();
+        header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+        if (exists) {
+            if (header.getInt(0) != FILE_VERSION) throw new IOException("Unknown run history file version in " + path);
+            if (header.getInt(4) != idExperiment) throw new IOException("Run history " + path + " belongs to another experiment");
+            size = header.getInt(8);
+            for (int i = 0; i < (size + SEGMENT_RUNS - 1) / SEGMENT_RUNS; i++) mapSegment();
+            for (int run = 0; run < size; run++) {
+                jobs.set(getInt(JOB, run));
+                runsOf(getInt(SOLVER_CONFIG, run)).add(run);
+            }
+        } else {
+            header.putInt(0, FILE_VERSION);
+            header.putInt(4, idExperiment);
+            header.putInt(8, 0);
+            size = 0;
+        }
+        configsFile = new File(path.getPath() + ".configs");
+        for (Integer idSolverConfig: readConfigurations().keySet()) configs.set(idSolverConfig);
+    }
+
+    private void mapSegment() throws IOException {
+        segments.add(channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + segments.size() * SEGMENT_SIZE, SEGMENT_SIZE));
+    }
+
+    private int index(int column, int run) {
+        return (column * SEGMENT_RUNS + run % SEGMENT_RUNS) * 4;
+    }
+
+    private int getInt(int column, int run) {
+        return segments.get(run / SEGMENT_RUNS).getInt(index(column, run));
+    }
+
+    private float getFloat(int column, int run) {
+        return segments.get(run / SEGMENT_RUNS).getFloat(index(column, run));
+    }
+
+    private RunList runsOf(int idSolverConfig) {
+        RunList runs = configRuns.get(idSolverConfig);
+        if (runs == null) {
+            runs = new RunList();
+            configRuns.put(idSolverConfig, runs);
+        }
+        return runs;
+    }
+
+    /**
+     * Adds a finished run.
+     * @param cost cost of the run under the cost function of the session
+     * @return false if the run of the job was already added
+     */
+    public synchronized boolean add(ExperimentResult result, float cost) throws IOException {
+        if (jobs.get(result.getId())) return false;
+        if (size == segments.size() * SEGMENT_RUNS) mapSegment();
+        MappedByteBuffer segment = segments.get(size / SEGMENT_RUNS);
+        segment.putInt(index(JOB, size), result.getId());
+        segment.putInt(index(SOLVER_CONFIG, size), result.getSolverConfigId());
+        segment.putInt(index(INSTANCE, size), result.getInstanceId());
+        segment.putInt(index(SEED, size), result.getSeed());
+        segment.putInt(index(STATUS, size), result.getStatus().getStatusCode());
+        segment.putInt(index(RESULT_CODE, size), result.getResultCode().getResultCode());
+        segment.putFloat(index(RESULT_TIME, size), result.getResultTime());
+        segment.putInt(index(CPU_TIME_LIMIT, size), result.getCPUTimeLimit());
+        segment.putFloat(index(COST, size), cost);
+        jobs.set(result.getId());
+        runsOf(result.getSolverConfigId()).add(size);
+        size++;
+        // the number of runs is updated last, so a crash never exposes a partial entry
+        header.putInt(8, size);
+        return true;
+    }
+
+    /**
+     * Records the parameter configuration of a solver configuration, once per solver configuration.
+     */
+    public synchronized void addConfiguration(int idSolverConfig, ParameterConfiguration config) throws IOException {
+        if (configs.get(idSolverConfig)) return;
+        if (configsOut == null) configsOut = new PrintWriter(new FileWriter(configsFile, true));
+        configsOut.println(idSolverConfig + "\t" + ConfigurationCodec.encode(config));
+        configsOut.flush();
+        configs.set(idSolverConfig);
+    }
+
+    /**
+     * @return the encoded parameter configurations of the recorded solver configurations (see ConfigurationCodec)
+     */
+    public synchronized Map<Integer, String> readConfigurations() throws IOException {
+        Map<Integer, String> encoded = new LinkedHashMap<Integer, String>();
+        if (!configsFile.exists()) return encoded;
+        BufferedReader in = new BufferedReader(new FileReader(configsFile));
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] fields = line.split("\t", 2);
+                // the last line can be incomplete after a crash
+                if (fields.length == 2) encoded.put(Integer.valueOf(fields[0]), fields[1]);
+            }
+        } finally {
+            in.close();
+        }
+        return encoded;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized int getIdJob(int run) {
+        return getInt(JOB, run);
+    }
+
+    public synchronized int getIdSolverConfig(int run) {
+        return getInt(SOLVER_CONFIG, run);
+    }
+
+    public synchronized int getIdInstance(int run) {
+        return getInt(INSTANCE, run);
+    }
+
+    public synchronized int getSeed(int run) {
+        return getInt(SEED, run);
+    }
+
+    /**
+     * @return cost of the run under the cost function of the session that added it
+     */
+    public synchronized float getCost(int run) {
+        return getFloat(COST, run);
+    }
+
+    /**
+     * @return the run as experiment result, e.g. for cost functions
+     */
+    public synchronized ExperimentResult getResult(int run) {
+        return new LocalExperimentResult(getInt(JOB, run), idExperiment, getInt(SOLVER_CONFIG, run),
+                getInt(INSTANCE, run), getInt(SEED, run), 0, LocalExperimentResult.statusCode(getInt(STATUS, run)),
+                LocalExperimentResult.resultCode(getInt(RESULT_CODE, run)), getFloat(RESULT_TIME, run), 0, null,
+                getInt(CPU_TIME_LIMIT, run));
+    }
+
+    /**
+     * Accumulates the runs of all solver configurations under the given cost function.
+     * @param instances IDs of the instances whose runs count, null for all instances
+     * @return accumulator of each solver configuration with runs, in the order of their first run
+     */
+    public synchronized Map<Integer, CostAccumulator> accumulate(CostFunction costFunction, Set<Integer> instances) {
+        Map<Integer, CostAccumulator> accumulators = new LinkedHashMap<Integer, CostAccumulator>();
+        for (int run = 0; run < size; run++) {
+            if (instances != null && !instances.contains(getInt(INSTANCE, run))) continue;
+            int idSolverConfig = getInt(SOLVER_CONFIG, run);
+            CostAccumulator accumulator = accumulators.get(idSolverConfig);
+            if (accumulator == null) {
+                accumulator = CostAccumulator.create(costFunction);
+                accumulators.put(idSolverConfig, accumulator);
+            }
+            accumulator.add(getResult(run));
+        }
+        return accumulators;
+    }
+
+    /**
+     * Cost of the runs of a solver configuration under the given cost function.
+     * @param instances IDs of the instances whose runs count, null for all instances
+     * @return null if there are no such runs
+     */
+    public synchronized Float getCost(CostFunction costFunction, int idSolverConfig, Set<Integer> instances) {
+        RunList runs = configRuns.get(idSolverConfig);
+        if (runs == null) return null;
+        CostAccumulator accumulator = null;
+        for (int i = 0; i < runs.size; i++) {
+            int run = runs.runs[i];
+            if (instances != null && !instances.contains(getInt(INSTANCE, run))) continue;
+            if (accumulator == null) accumulator = CostAccumulator.create(costFunction);
+            accumulator.add(getResult(run));
+        }
+        return accumulator == null ? null : accumulator.getCost();
+    }
+
+    /**
+     * Ranks the solver configurations by their cost under the given cost function.
+     * @param instances IDs of the instances whose runs count, null for all instances
+     * @param minRuns minimum number of runs of a ranked configuration
+     * @return IDs of the configurations with at least minRuns runs, the best first
+     */
+    public List<Integer> rank(CostFunction costFunction, Set<Integer> instances, int minRuns) {
+        return rank(accumulate(costFunction, instances), minRuns);
+    }
+
+    /**
+     * Ranks the solver configurations by the cost of their accumulators, see accumulate().
+     * @return IDs of the configurations with at least minRuns runs, the best first
+     */
+    public static List<Integer> rank(final Map<Integer, CostAccumulator> accumulators, int minRuns) {
+        List<Integer> ranking = new ArrayList<Integer>();
+        for (Map.Entry<Integer, CostAccumulator> e: accumulators.entrySet()) {
+            if (e.getValue().getNumRuns() >= minRuns) ranking.add(e.getKey());
+        }
+        Collections.sort(ranking, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Float.compare(accumulators.get(a).getCost(), accumulators.get(b).getCost());
+            }
+        });
+        return ranking;
+    }
+
+    /**
+     * @return number of runs of the solver configuration
+     */
+    public synchronized int getNumRuns(int idSolverConfig) {
+        RunList runs = configRuns.get(idSolverConfig);
+        return runs == null ? 0 : runs.size;
+    }
+
+    /**
+     * Writes the mapped runs to the file and closes it.
+     */
+    public synchronized void close() throws IOException {
+        for (MappedByteBuffer segment: segments) segment.force();
+        header.force();
+        file.close();
+        if (configsOut != null) configsOut.close();
+    }
+
+    /**
+     * Growable array of run numbers.
+     */
+    private static class RunList {
+        int[] runs = new int[4];
+        int size = 0;
+
+        void add(int run) {
+            if (size == runs.length) runs = Arrays.copyOf(runs, 2 * size);
+            runs[size++] = run;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package edacc.configurator.ga;
+
+/**
+ * Simulated wall-clock time that only advances when advance() is called. A job
+ * tracker with a simulated clock doesn't poll in a background thread: waiting for
+ * an update advances the clock and polls the backend in the waiting thread, so
+ * replayed sessions are deterministic and don't wait in real time.
+ */
+public class SimulatedClock extends Clock {
+    private long now = 0;
+
+    @Override
+    public synchronized long currentTimeMillis() {
+        return now;
+    }
+
+    public synchronized void advance(long millis) {
+        now += millis;
+    }
+}
@@ -0,0 +1,152 @@
+package edacc.configurator.ga;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edacc.parameterspace.Parameter;
+import edacc.parameterspace.ParameterConfiguration;
+import edacc.parameterspace.graph.ParameterGraph;
+
+/**
+ * k-nearest-neighbour regression model of the cost of parameter configurations,
+ * trained on all evaluated individuals. It is used to pre-screen candidates before
+ * their jobs are launched.
+ *
+ * The distance of two configurations (see Genotype) normalizes the numeric values
+ * with the observed bounds of the parameters. The prediction is the inverse distance
+ * weighted mean of the log costs of the k nearest samples.
+ *
+ * Adding a sample is O(1); a prediction is linear in the number of samples, which is
+ * limited to the most recently added maxSamples configurations.
+ */
+public class Surrogate {
+    private final Parameter[] parameters;
+    private final int k;
+    /** observed bounds of the numeric values of each parameter */
+    private final double[] min;
+    private final double[] max;
+    /** scale of each parameter by the observed bounds */
+    private final double[] scale;
+    private final Map<String, Sample> samples;
+
+    private static class Sample {
+        final Genotype genotype;
+        final double logCost;
+
+        Sample(Genotype genotype, double logCost) {
+            this.genotype = genotype;
+            this.logCost = logCost;
+        }
+    }
+
+    /**
+     * @param pspace
+     * @param k number of nearest samples a prediction is based on
+     * @param maxSamples maximum number of samples, the oldest samples are dropped first
+     */
+    public Surrogate(ParameterGraph pspace, int k, final int maxSamples) {
+        this.parameters = Genotype.parameters(pspace);
+        this.k = Math.max(1, k);
+        this.min = new double[parameters.length];
+        this.max = new double[parameters.length];
+        this.scale = new double[parameters.length];
+        Arrays.fill(min, Double.POSITIVE_INFINITY);
+        Arrays.fill(max, Double.NEGATIVE_INFINITY);
+        this.samples = new LinkedHashMap<String, Sample>() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Sample> eldest) {
+                return size() > maxSamples;
+            }
+        };
+    }
+
+    public synchronized int size() {
+        return samples.size();
+    }
+
+    /**
+     * Adds or replaces the sample of the given configuration.
+     */
+    public synchronized void add(ParameterConfiguration config, float cost) {
+        Sample sample = new Sample(Genotype.encode(parameters, config), Math.log1p(Math.max(0, cost)));
+        for (int i = 0; i < parameters.length; i++) {
+            double x = sample.genotype.getNumeric(i);
+            if (Double.isNaN(x)) continue;
+            if (x < min[i]) min[i] = x;
+            if (x > max[i]) max[i] = x;
+            scale[i] = Genotype.scale(min[i], max[i]);
+        }
+        String key = FitnessCache.canonicalKey(config);
+        samples.remove(key); // re-insert as the most recent sample
+        samples.put(key, sample);
+    }
+
+    /**
+     * @return predicted cost of the configuration, NaN if there are no samples
+     */
+    public synchronized float predict(ParameterConfiguration config) {
+        if (samples.isEmpty()) return Float.NaN;
+        Genotype query = Genotype.encode(parameters, config);
+        int n = Math.min(k, samples.size());
+        // the n nearest samples so far, sorted by distance
+        double[] nearestDistance = new double[n];
+        double[] nearestCost = new double[n];
+        Arrays.fill(nearestDistance, Double.POSITIVE_INFINITY);
+        for (Sample sample: samples.values()) {
+            double d = query.distance(sample.genotype, scale, nearestDistance[n - 1]);
+            if (d >= nearestDistance[n - 1]) continue;
+            int j = n - 1;
+            while (j > 0 && nearestDistance[j - 1] > d) {
+                nearestDistance[j] = nearestDistance[j - 1];
+                nearestCost[j] = nearestCost[j - 1];
+                j--;
+            }
+            nearestDistance[j] = d;
+            nearestCost[j] = sample.logCost;
+        }
+        double sum = 0, weights = 0;
+        for (int j = 0; j < n; j++) {
+            double w = 1.0 / (nearestDistance[j] + 1e-6);
+            sum += w * nearestCost[j];
+            weights += w;
+        }
+        return (float) Math.expm1(sum / weights);
+    }
+
+    /**
+     * Selects the n candidates with the lowest predicted cost. Candidates with equal
+     * parameter configurations are only selected more than once if there aren't enough
+     * different candidates.
+     */
+    public List<Individual> selectBest(List<Individual> candidates, int n) {
+        final Map<Individual, Float> predictions = new IdentityHashMap<Individual, Float>();
+        for (Individual ind: candidates) predictions.put(ind, predict(ind.getConfig()));
+        List<Individual> sorted = new ArrayList<Individual>(candidates);
+        Collections.sort(sorted, new Comparator<Individual>() {
+            @Override
+            public int compare(Individual a, Individual b) {
+                return Float.compare(predictions.get(a), predictions.get(b));
+            }
+        });
+        List<Individual> selected = new ArrayList<Individual>();
+        List<Individual> duplicates = new ArrayList<Individual>();
+        Set<String> keys = new HashSet<String>();
+        for (Individual ind: sorted) {
+            if (selected.size() == n) break;
+            if (keys.add(FitnessCache.canonicalKey(ind.getConfig()))) selected.add(ind);
+            else duplicates.add(ind);
+        }
+        for (int i = 0; selected.size() < n && i < duplicates.size(); i++) selected.add(duplicates.get(i));
+        return selected;
+    }
+}
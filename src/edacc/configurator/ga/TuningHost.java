@@ -0,0 +1,139 @@
+package edacc.configurator.ga;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+
+import edacc.configurator.ga.backend.EDACCBackend;
+import edacc.configurator.ga.backend.EvaluationBackend;
+import edacc.configurator.ga.backend.InstrumentedBackend;
+
+/**
+ * Runs the tuning sessions of several experiments in one process. The sessions share
+ * one database connection pool, one job tracker that polls the jobs of all sessions
+ * together and a core budget that divides the cluster cores between the experiments.
+ * Every session has its own configuration file, random number generator, search state
+ * and metrics, so its results are the same as those of a standalone session with the
+ * same seed.
+ *
+ * Host configuration file (same format as the session files):
+ * host, port, database, user, password - the database of all sessions
+ * maxConnections - size of the database connection pool (default 8)
+ * cores - number of cluster cores the sessions divide between them, 0 for no budget
+ * jobCPUTimeLimit - initial expected job runtime of the tracker
+ * session = <configuration file> - once per session
+ */
+public class TuningHost {
+    private final EvaluationBackend backend;
+    private final JobTracker tracker;
+    private final CoreBudget budget;
+    private final Metrics metrics = new Metrics();
+
+    /**
+     * @param backend backend of all sessions
+     * @param cores number of cluster cores the sessions divide between them, 0 for no budget
+     * @param jobCPUTimeLimit initial expected job runtime of the tracker
+     */
+    public TuningHost(EvaluationBackend backend, int cores, int jobCPUTimeLimit) {
+        this.backend = backend;
+        tracker = new JobTracker(new InstrumentedBackend(backend, metrics), jobCPUTimeLimit, metrics);
+        budget = cores > 0 ? new CoreBudget(cores) : null;
+    }
+
+    public static void main(String... args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Missing host configuration file. Use java -cp GA.jar edacc.configurator.ga.TuningHost <host config file path>");
+            return;
+        }
+        Scanner scanner = new Scanner(new File(args[0]));
+        String hostname = "", user = "", password = "", database = "";
+        int port = 3306;
+        int maxConnections = 8;
+        int cores = 0;
+        int jobCPUTimeLimit = 10;
+        List<File> sessions = new ArrayList<File>();
+        while (scanner.hasNextLine()) {
+            String line = scanner.nextLine();
+            if (line.trim().startsWith("%")) continue;
+            String[] keyval = line.split("=");
+            String key = keyval[0].trim();
+            String value = keyval[1].trim();
+            if ("host".equals(key)) hostname = value;
+            else if ("user".equals(key)) user = value;
+            else if ("password".equals(key)) password = value;
+            else if ("port".equals(key)) port = Integer.valueOf(value);
+            else if ("database".equals(key)) database = value;
+            else if ("maxConnections".equals(key)) maxConnections = Integer.valueOf(value);
+            else if ("cores".equals(key)) cores = Integer.valueOf(value);
+            else if ("jobCPUTimeLimit".equals(key)) jobCPUTimeLimit = Integer.valueOf(value);
+            else if ("session".equals(key)) sessions.add(new File(value));
+        }
+        scanner.close();
+        TuningHost host = new TuningHost(new EDACCBackend(hostname, port, database, user, password, maxConnections),
+                cores, jobCPUTimeLimit);
+        host.run(sessions);
+    }
+
+    public EvaluationBackend getBackend() {
+        return backend;
+    }
+
+    public JobTracker getTracker() {
+        return tracker;
+    }
+
+    /**
+     * @return core budget of the sessions, null if the cores aren't divided
+     */
+    public CoreBudget getBudget() {
+        return budget;
+    }
+
+    /**
+     * @return metrics of the shared job tracker and its backend calls
+     */
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Runs the sessions of the given configuration files, each in its own thread,
+     * and waits until all of them terminated.
+     */
+    public void run(List<File> sessionFiles) throws Exception {
+        tracker.start();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (File file: sessionFiles) {
+            final GAConfigurator ga = GAConfigurator.configure(file, -1, this);
+            if (ga == null) {
+                System.out.println("skipping incomplete session " + file);
+                continue;
+            }
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        ga.run();
+                    } catch (Exception e) {
+                        System.out.println("session of experiment " + ga.getIdExperiment() + " failed");
+                        e.printStackTrace();
+                    } finally {
+                        try {
+                            ga.shutdown();
+                        } catch (Exception e) {
+                            e.printStackTrace();
+                        }
+                    }
+                }
+            }, "Session-" + ga.getIdExperiment());
+            threads.add(thread);
+            thread.start();
+            System.out.println("started session of experiment " + ga.getIdExperiment() + " from " + file);
+        }
+        for (Thread thread: threads) thread.join();
+        System.out.println("all sessions terminated - tracker metrics: " + metrics.toJSON());
+        tracker.shutdown();
+        backend.disconnect();
+    }
+}
@@ -0,0 +1,454 @@
+package edacc.configurator.ga.backend;
+
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import edacc.api.API;
+import edacc.api.APIImpl;
+import edacc.api.costfunctions.CostFunction;
+import edacc.model.ConfigurationScenario;
+import edacc.model.ConfigurationScenarioDAO;
+import edacc.model.ConfigurationScenarioParameter;
+import edacc.model.Course;
+import edacc.model.DatabaseConnector;
+import edacc.model.ExperimentResult;
+import edacc.model.ExperimentResultDAO;
+import edacc.model.InstanceSeed;
+import edacc.model.ResultCode;
+import edacc.model.SolverBinaries;
+import edacc.model.SolverBinariesDAO;
+import edacc.model.StatusCode;
+import edacc.parameterspace.Parameter;
+import edacc.parameterspace.ParameterConfiguration;
+import edacc.parameterspace.domain.FlagDomain;
+import edacc.parameterspace.domain.OptionalDomain;
+import edacc.parameterspace.graph.ParameterGraph;
+
+/**
+ * Evaluation backend that uses the EDACC API, i.e. the jobs are run
+ * by the computation clients of an EDACC database.
+ */
+public class EDACCBackend implements EvaluationBackend {
+    private static final String insertSolverConfigQuery = "INSERT INTO SolverConfig (SolverBinaries_IdSolverBinary, Experiment_IdExperiment, seed_group, name, cost, cost_function, parameter_hash, hint) VALUES (?,?,?,?,?,?,?,?)";
+    private static final String insertParameterQuery = "INSERT INTO SolverConfig_has_Parameters (SolverConfig_IdSolverConfig, Parameters_IdParameter, value) VALUES (?,?,?)";
+    private static final String deleteNotStartedJobQuery = "DELETE FROM ExperimentResults WHERE idJob = ? AND status = " + StatusCode.NOT_STARTED.getStatusCode();
+    private static final String deleteCourseJobQuery = "DELETE FROM ExperimentResults WHERE idJob = ?";
+    private static final String insertCourseQuery = "INSERT INTO Course (ConfigurationScenario_idConfigurationScenario, Instances_idInstance, seed, `order`) VALUES (?, ?, ?, ?)";
+
+    private final API api;
+
+    public EDACCBackend(String hostname, int port, String database, String username, String password) throws Exception {
+        api = new APIImpl();
+        api.connect(hostname, port, database, username, password);
+    }
+
+    /**
+     * The database connections are a pool of the EDACC model that is shared by all
+     * API instances of the JVM, connecting again replaces the connections of all of them.
+     * Several configurators in one JVM therefore have to share one backend (see TuningHost).
+     * @param maxConnections maximum number of database connections of the pool
+     */
+    public EDACCBackend(String hostname, int port, String database, String username, String password, int maxConnections) throws Exception {
+        api = new APIImpl();
+        DatabaseConnector.getInstance().connect(hostname, port, username, database, password, false, false, maxConnections, false, false);
+    }
+
+    public API getAPI() {
+        return api;
+    }
+
+    @Override
+    public ParameterGraph loadParameterGraph(int idExperiment) throws Exception {
+        return api.loadParameterGraphFromDB(idExperiment);
+    }
+
+    @Override
+    public String getCanonicalName(int idExperiment, ParameterConfiguration config) throws Exception {
+        return api.getCanonicalName(idExperiment, config);
+    }
+
+    @Override
+    public int createSolverConfig(int idExperiment, ParameterConfiguration config, String name) throws Exception {
+        return api.createSolverConfig(idExperiment, config, name);
+    }
+
+    @Override
+    public int exists(int idExperiment, ParameterConfiguration config) throws Exception {
+        return api.exists(idExperiment, config);
+    }
+
+    @Override
+    public ParameterConfiguration getParameterConfiguration(int idExperiment, int idSolverConfig) throws Exception {
+        return api.getParameterConfiguration(idExperiment, idSolverConfig);
+    }
+
+    @Override
+    public String getSolverConfigName(int idSolverConfig) throws Exception {
+        return api.getSolverConfigName(idSolverConfig);
+    }
+
+    @Override
+    public void updateSolverConfigurationName(int idSolverConfig, String name) throws Exception {
+        api.updateSolverConfigurationName(idSolverConfig, name);
+    }
+
+    @Override
+    public Float getSolverConfigurationCost(int idSolverConfig) throws Exception {
+        return api.getSolverConfigurationCost(idSolverConfig);
+    }
+
+    @Override
+    public void updateSolverConfigurationCost(int idSolverConfig, float cost, CostFunction costFunction) throws Exception {
+        api.updateSolverConfigurationCost(idSolverConfig, cost, costFunction);
+    }
+
+    @Override
+    public List<Integer> getBestConfigurations(int idExperiment, CostFunction costFunction, int no) throws Exception {
+        return api.getBestConfigurations(idExperiment, costFunction, no);
+    }
+
+    @Override
+    public int getCourseLength(int idExperiment) throws Exception {
+        return api.getCourseLength(idExperiment);
+    }
+
+    @Override
+    public List<Integer> launchJob(int idExperiment, int idSolverConfig, int[] cpuTimeLimit, int numberOfJobs, Random rng) throws Exception {
+        return api.launchJob(idExperiment, idSolverConfig, cpuTimeLimit, numberOfJobs, rng);
+    }
+
+    /**
+     * Deletes the jobs of the solver configuration on the given course entries and creates new
+     * jobs on them, in a single transaction. The new jobs get the next run numbers of their instances.
+     */
+    @Override
+    public List<Integer> launchCourseJobs(int idExperiment, int idSolverConfig, int[] cpuTimeLimit, int[] courseIndices) throws Exception {
+        // the methods of the API synchronize on the API object
+        synchronized (api) {
+            Course course = ConfigurationScenarioDAO.getConfigurationScenarioByExperimentId(idExperiment).getCourse();
+            List<ExperimentResult> runs = api.getRuns(idExperiment, idSolverConfig);
+            List<ExperimentResult> courseRuns = courseRuns(course, runs, course.getLength());
+            Map<Integer, Integer> maxRun = new HashMap<Integer, Integer>();
+            for (ExperimentResult run: runs) {
+                Integer max = maxRun.get(run.getInstanceId());
+                if (max == null || run.getRun() > max) maxRun.put(run.getInstanceId(), run.getRun());
+            }
+            Connection conn = DatabaseConnector.getInstance().getConn();
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                PreparedStatement st = conn.prepareStatement(deleteCourseJobQuery);
+                ArrayList<ExperimentResult> jobs = new ArrayList<ExperimentResult>();
+                for (int i = 0; i < courseIndices.length; i++) {
+                    if (courseIndices[i] >= course.getLength()) throw new IllegalArgumentException("The course has no entry " + courseIndices[i]);
+                    ExperimentResult replaced = courseRuns.get(courseIndices[i]);
+                    if (replaced != null) {
+                        st.setInt(1, replaced.getId());
+                        st.addBatch();
+                    }
+                    InstanceSeed is = course.get(courseIndices[i]);
+                    Integer run = maxRun.get(is.instance.getId());
+                    run = run == null ? 0 : run + 1;
+                    maxRun.put(is.instance.getId(), run);
+                    jobs.add(ExperimentResultDAO.createExperimentResult(run, 0, 0, StatusCode.NOT_STARTED, is.seed, ResultCode.UNKNOWN, 0,
+                            idSolverConfig, idExperiment, is.instance.getId(), null, cpuTimeLimit[i], -1, -1, -1, -1, -1));
+                }
+                st.executeBatch();
+                st.close();
+                // batchSave doesn't commit because auto-commit is off
+                ExperimentResultDAO.batchSave(jobs);
+                conn.commit();
+                List<Integer> ids = new ArrayList<Integer>();
+                for (ExperimentResult job: jobs) ids.add(job.getId());
+                return ids;
+            } catch (Exception e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    /**
+     * Creates all solver configurations and jobs of the batch in a single transaction
+     * with one batched insert each for the solver configurations, their parameter values,
+     * the extension of the course and the jobs, instead of a few statements per configuration
+     * and job that are all committed separately. The inserted rows are the same as those of
+     * APIImpl.getCanonicalName, APIImpl.createSolverConfig and APIImpl.launchJob.
+     */
+    @Override
+    public void launchBatch(int idExperiment, LaunchBatch batch, Random rng) throws Exception {
+        if (batch.isEmpty()) return;
+        // the methods of the API synchronize on the API object
+        synchronized (api) {
+            Connection conn = DatabaseConnector.getInstance().getConn();
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                insertBatch(conn, idExperiment, batch, rng);
+                conn.commit();
+            } catch (Exception e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    private void insertBatch(Connection conn, int idExperiment, LaunchBatch batch, Random rng) throws Exception {
+        ConfigurationScenario cs = ConfigurationScenarioDAO.getConfigurationScenarioByExperimentId(idExperiment);
+        SolverBinaries solverBinary = SolverBinariesDAO.getById(cs.getIdSolverBinary());
+        List<ConfigurationScenarioParameter> params = new ArrayList<ConfigurationScenarioParameter>(cs.getParameters());
+        Collections.sort(params);
+        List<LaunchBatch.Entry> entries = batch.getEntries();
+
+        // solver configurations
+        String[] names = new String[entries.size()];
+        int[] ids = new int[entries.size()];
+        List<Map<String, Object>> values = new ArrayList<Map<String, Object>>();
+        PreparedStatement st = conn.prepareStatement(insertSolverConfigQuery, Statement.RETURN_GENERATED_KEYS);
+        for (int e = 0; e < entries.size(); e++) {
+            Map<String, Object> configValues = valuesByName(entries.get(e).getConfig());
+            values.add(configValues);
+            names[e] = entries.get(e).getNamePrefix() + canonicalName(params, configValues);
+            st.setInt(1, solverBinary.getId());
+            st.setInt(2, idExperiment);
+            st.setInt(3, 0);
+            st.setString(4, names[e]);
+            st.setNull(5, Types.FLOAT);
+            st.setNull(6, Types.VARCHAR);
+            st.setString(7, parameterHash(params, configValues));
+            st.setString(8, "");
+            st.addBatch();
+        }
+        st.executeBatch();
+        ResultSet generatedKeys = st.getGeneratedKeys();
+        for (int e = 0; e < entries.size(); e++) {
+            if (!generatedKeys.next()) throw new Exception("Missing ID of created solver configuration.");
+            ids[e] = generatedKeys.getInt(1);
+        }
+        generatedKeys.close();
+        st.close();
+
+        // parameter values
+        st = conn.prepareStatement(insertParameterQuery);
+        for (int e = 0; e < entries.size(); e++) {
+            for (ConfigurationScenarioParameter param: params) {
+                String value;
+                String name = param.getParameter().getName();
+                if ("instance".equals(name) || "seed".equals(name)) {
+                    value = "";
+                } else if (!param.isConfigurable()) {
+                    value = param.getParameter().getHasValue() ? param.getFixedValue() : "";
+                } else {
+                    Object configValue = values.get(e).get(name);
+                    if (configValue == null || OptionalDomain.OPTIONS.NOT_SPECIFIED.equals(configValue)
+                            || FlagDomain.FLAGS.OFF.equals(configValue)) continue;
+                    value = configValue.toString();
+                }
+                st.setInt(1, ids[e]);
+                st.setInt(2, param.getParameter().getId());
+                st.setString(3, value);
+                st.addBatch();
+            }
+        }
+        st.executeBatch();
+        st.close();
+
+        // the new configurations don't have any runs yet, so they all start at the beginning of the course
+        Course course = cs.getCourse();
+        int maxJobs = 0;
+        for (LaunchBatch.Entry entry: entries) maxJobs = Math.max(maxJobs, entry.getCpuTimeLimit().length);
+        int oldLength = course.getLength();
+        if (maxJobs > oldLength) {
+            st = conn.prepareStatement(insertCourseQuery);
+            for (int i = oldLength; i < maxJobs; i++) {
+                // like APIImpl.launchJob for a configuration without runs, the instances of the
+                // new entries repeat the initial course from its beginning
+                InstanceSeed is = new InstanceSeed(course.get((i - oldLength) % course.getInitialLength()).instance, rng.nextInt(Integer.MAX_VALUE));
+                st.setInt(1, cs.getId());
+                st.setInt(2, is.instance.getId());
+                st.setInt(3, is.seed);
+                st.setInt(4, i);
+                st.addBatch();
+                course.add(is);
+            }
+            st.executeBatch();
+            st.close();
+        }
+
+        // jobs, batchSave doesn't commit because auto-commit is off
+        ArrayList<ExperimentResult> jobs = new ArrayList<ExperimentResult>();
+        for (int e = 0; e < entries.size(); e++) {
+            int[] cpuTimeLimit = entries.get(e).getCpuTimeLimit();
+            Map<Integer, Integer> runs = new HashMap<Integer, Integer>();
+            for (int i = 0; i < cpuTimeLimit.length; i++) {
+                InstanceSeed is = course.get(i);
+                Integer run = runs.get(is.instance.getId());
+                run = run == null ? 0 : run + 1;
+                runs.put(is.instance.getId(), run);
+                jobs.add(ExperimentResultDAO.createExperimentResult(run, 0, 0, StatusCode.NOT_STARTED, is.seed, ResultCode.UNKNOWN, 0,
+                        ids[e], idExperiment, is.instance.getId(), null, cpuTimeLimit[i], -1, -1, -1, -1, -1));
+            }
+        }
+        ExperimentResultDAO.batchSave(jobs);
+
+        int job = 0;
+        for (int e = 0; e < entries.size(); e++) {
+            List<Integer> jobIds = new ArrayList<Integer>();
+            for (int i = 0; i < entries.get(e).getCpuTimeLimit().length; i++) jobIds.add(jobs.get(job++).getId());
+            entries.get(e).setLaunched(names[e], ids[e], jobIds);
+        }
+    }
+
+    /**
+     * @return values of the parameters of the configuration by parameter name
+     */
+    private static Map<String, Object> valuesByName(ParameterConfiguration config) {
+        Map<String, Object> values = new HashMap<String, Object>();
+        for (Parameter p: config.getParameter_instances().keySet()) {
+            if (!values.containsKey(p.getName())) values.put(p.getName(), config.getParameterValue(p));
+        }
+        return values;
+    }
+
+    /**
+     * Same as APIImpl.getCanonicalName
+     */
+    private static String canonicalName(List<ConfigurationScenarioParameter> params, Map<String, Object> values) {
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < params.size(); i++) {
+            ConfigurationScenarioParameter param = params.get(i);
+            String paramName = param.getParameter().getName();
+            if ("instance".equals(paramName) || "seed".equals(paramName)) continue;
+            if (!param.isConfigurable() || !values.containsKey(paramName)) continue;
+            Object value = values.get(paramName);
+            if (OptionalDomain.OPTIONS.NOT_SPECIFIED.equals(value)) continue;
+            name.append(param.getParameter().getPrefix());
+            if (!FlagDomain.FLAGS.ON.equals(value)) {
+                if (param.getParameter().getSpace()) name.append(" ");
+                name.append(value);
+            }
+            if (i != params.size() - 1) name.append(" ");
+        }
+        return name.toString();
+    }
+
+    /**
+     * Same as the parameter hash of APIImpl.createSolverConfig
+     */
+    private static String parameterHash(List<ConfigurationScenarioParameter> params, Map<String, Object> values) throws Exception {
+        MessageDigest md = MessageDigest.getInstance("SHA");
+        for (ConfigurationScenarioParameter param: params) {
+            String name = param.getParameter().getName();
+            if ("instance".equals(name) || "seed".equals(name) || !param.isConfigurable()) continue;
+            Object value = values.get(name);
+            if (value != null && !(value instanceof OptionalDomain.OPTIONS) && !value.equals(FlagDomain.FLAGS.OFF)) {
+                md.update(value.toString().getBytes());
+            }
+        }
+        byte[] digest = md.digest();
+        return String.format("%0" + (digest.length << 1) + "X", new BigInteger(1, digest));
+    }
+
+    @Override
+    public Map<Integer, ExperimentResult> getJobsByIDs(List<Integer> ids) throws Exception {
+        return api.getJobsByIDs(ids);
+    }
+
+    @Override
+    public List<ExperimentResult> getRuns(int idExperiment, int idSolverConfig) throws Exception {
+        return api.getRuns(idExperiment, idSolverConfig);
+    }
+
+    /**
+     * The runs are assigned to the course entries by their instance and seed, like APIImpl.launchJob does.
+     */
+    @Override
+    public List<ExperimentResult> getCourseRuns(int idExperiment, int idSolverConfig, int length) throws Exception {
+        synchronized (api) {
+            Course course = ConfigurationScenarioDAO.getConfigurationScenarioByExperimentId(idExperiment).getCourse();
+            return courseRuns(course, api.getRuns(idExperiment, idSolverConfig), length);
+        }
+    }
+
+    /**
+     * @return the runs on the first length entries of the course, null where there is none
+     */
+    private static List<ExperimentResult> courseRuns(Course course, List<ExperimentResult> runs, int length) {
+        // an instance/seed pair can occur more than once, its runs take its entries in course order
+        Map<String, List<Integer>> entries = new HashMap<String, List<Integer>>();
+        for (int i = 0; i < Math.min(length, course.getLength()); i++) {
+            String key = course.get(i).instance.getId() + ":" + course.get(i).seed;
+            if (!entries.containsKey(key)) entries.put(key, new ArrayList<Integer>());
+            entries.get(key).add(i);
+        }
+        List<ExperimentResult> courseRuns = new ArrayList<ExperimentResult>(Collections.<ExperimentResult>nCopies(length, null));
+        for (ExperimentResult run: runs) {
+            List<Integer> free = entries.get(run.getInstanceId() + ":" + run.getSeed());
+            if (free != null && !free.isEmpty()) courseRuns.set(free.remove(0), run);
+        }
+        return courseRuns;
+    }
+
+    /**
+     * APIImpl.killJob only sends a kill message to the client that runs the job, a job that
+     * isn't started yet would still run later. Such jobs are deleted instead; the delete only
+     * matches while the job isn't started, so a client can't pick it up at the same time.
+     * @return null if the job was deleted or a kill message was sent, the result of finished jobs
+     */
+    @Override
+    public ExperimentResult killJob(int idJob) throws Exception {
+        // the methods of the API synchronize on the API object
+        synchronized (api) {
+            PreparedStatement st = DatabaseConnector.getInstance().getConn().prepareStatement(deleteNotStartedJobQuery);
+            try {
+                st.setInt(1, idJob);
+                if (st.executeUpdate() == 1) return null;
+            } finally {
+                st.close();
+            }
+            return api.killJob(idJob);
+        }
+    }
+
+    @Override
+    public void setJobPriorities(Map<Integer, Integer> priorities) throws Exception {
+        ArrayList<ExperimentResultDAO.IdValue<Integer>> values = new ArrayList<ExperimentResultDAO.IdValue<Integer>>();
+        for (Map.Entry<Integer, Integer> e: priorities.entrySet()) {
+            values.add(new ExperimentResultDAO.IdValue<Integer>(e.getKey(), e.getValue()));
+        }
+        // the methods of the API synchronize on the API object
+        synchronized (api) {
+            ExperimentResultDAO.batchUpdatePriority(values);
+        }
+    }
+
+    @Override
+    public int getComputationCoreCount(int idExperiment) throws Exception {
+        return api.getComputationCoreCount(idExperiment);
+    }
+
+    @Override
+    public int getComputationJobCount(int idExperiment) throws Exception {
+        return api.getComputationJobCount(idExperiment);
+    }
+
+    @Override
+    public void disconnect() {
+        api.disconnect();
+    }
+}
@@ -0,0 +1,100 @@
+package edacc.configurator.ga.backend;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import edacc.api.costfunctions.CostFunction;
+import edacc.model.ExperimentResult;
+import edacc.parameterspace.ParameterConfiguration;
+import edacc.parameterspace.graph.ParameterGraph;
+
+/**
+ * The operations the configurator needs to create solver configurations,
+ * run their jobs and store their costs. The methods have the same semantics
+ * as the equally named methods of the EDACC API (edacc.api.API).
+ *
+ * EDACCBackend runs the jobs on the computation clients of an EDACC database,
+ * LocalBackend runs the solver binary on the local machine.
+ */
+public interface EvaluationBackend {
+    public ParameterGraph loadParameterGraph(int idExperiment) throws Exception;
+
+    public String getCanonicalName(int idExperiment, ParameterConfiguration config) throws Exception;
+
+    public int createSolverConfig(int idExperiment, ParameterConfiguration config, String name) throws Exception;
+
+    /**
+     * @return ID of the solver configuration with the given parameter configuration, 0 if there is none
+     */
+    public int exists(int idExperiment, ParameterConfiguration config) throws Exception;
+
+    public ParameterConfiguration getParameterConfiguration(int idExperiment, int idSolverConfig) throws Exception;
+
+    public String getSolverConfigName(int idSolverConfig) throws Exception;
+
+    public void updateSolverConfigurationName(int idSolverConfig, String name) throws Exception;
+
+    public Float getSolverConfigurationCost(int idSolverConfig) throws Exception;
+
+    public void updateSolverConfigurationCost(int idSolverConfig, float cost, CostFunction costFunction) throws Exception;
+
+    public List<Integer> getBestConfigurations(int idExperiment, CostFunction costFunction, int no) throws Exception;
+
+    public int getCourseLength(int idExperiment) throws Exception;
+
+    /**
+     * Launches numberOfJobs jobs of the solver configuration on the next instance/seed
+     * pairs of the course the configuration didn't run on yet.
+     * @return IDs of the launched jobs
+     */
+    public List<Integer> launchJob(int idExperiment, int idSolverConfig, int[] cpuTimeLimit, int numberOfJobs, Random rng) throws Exception;
+
+    /**
+     * Launches jobs of the solver configuration on the given entries of the course, e.g. to
+     * replace killed or lost runs. Existing jobs of the configuration on these entries are replaced.
+     * @param courseIndices positions of the course entries, starting at 0, less than the course length
+     * @return IDs of the launched jobs in the order of courseIndices
+     */
+    public List<Integer> launchCourseJobs(int idExperiment, int idSolverConfig, int[] cpuTimeLimit, int[] courseIndices) throws Exception;
+
+    /**
+     * Creates the solver configurations of all entries of the batch and launches their jobs,
+     * with the same result as getCanonicalName, createSolverConfig and launchJob for each entry.
+     * The names, solver configuration IDs and job IDs are stored in the entries.
+     */
+    public void launchBatch(int idExperiment, LaunchBatch batch, Random rng) throws Exception;
+
+    public Map<Integer, ExperimentResult> getJobsByIDs(List<Integer> ids) throws Exception;
+
+    /**
+     * @return all jobs of the solver configuration in the order of the instance course
+     */
+    public List<ExperimentResult> getRuns(int idExperiment, int idSolverConfig) throws Exception;
+
+    /**
+     * @return the jobs of the solver configuration on the first length entries of the course,
+     * element i is the job on course entry i or null if the configuration has none there
+     */
+    public List<ExperimentResult> getCourseRuns(int idExperiment, int idSolverConfig, int length) throws Exception;
+
+    public ExperimentResult killJob(int idJob) throws Exception;
+
+    /**
+     * Sets the priorities of the given jobs (job ID to priority) at once.
+     * Jobs with higher priorities are computed first.
+     */
+    public void setJobPriorities(Map<Integer, Integer> priorities) throws Exception;
+
+    /**
+     * @return number of computation cores that are available to the experiment
+     */
+    public int getComputationCoreCount(int idExperiment) throws Exception;
+
+    /**
+     * @return number of not started and running jobs of the experiment
+     */
+    public int getComputationJobCount(int idExperiment) throws Exception;
+
+    public void disconnect();
+}
@@ -0,0 +1,313 @@
+package edacc.configurator.ga.backend;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import edacc.api.costfunctions.CostFunction;
+import edacc.configurator.ga.Metrics;
+import edacc.model.ExperimentResult;
+import edacc.parameterspace.ParameterConfiguration;
+import edacc.parameterspace.graph.ParameterGraph;
+
+/**
+ * Evaluation backend that forwards all calls to another backend and records
+ * their durations in the "backend.<method>" timers of the given metrics.
+ * Calls that throw are counted in the "backend.errors" counter.
+ */
+public class InstrumentedBackend implements EvaluationBackend {
+    private final EvaluationBackend backend;
+    private final Metrics metrics;
+
+    public InstrumentedBackend(EvaluationBackend backend, Metrics metrics) {
+        this.backend = backend;
+        this.metrics = metrics;
+    }
+
+    public EvaluationBackend getBackend() {
+        return backend;
+    }
+
+    @Override
+    public ParameterGraph loadParameterGraph(int idExperiment) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return backend.loadParameterGraph(idExperiment);
+        } catch (Exception e) {
+            metrics.add("backend.errors", 1);
+            throw e;
+        } finally {
+            metrics.timeSince("backend.loadParameterGraph", start);
+        }
+    }
+
+    @Override
+    public String getCanonicalName(int idExperiment, ParameterConfiguration config) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return backend.getCanonicalName(idExperiment, config);
+        } catch (Exception e) {
+            metrics.add("backend.errors", 1);
+            throw e;
+        } finally {
+            metrics.timeSince("backend.getCanonicalName", start);
+        }
+    }
+
+    @Override
+    public int createSolverConfig(int idExperiment, ParameterConfiguration config, String name) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return backend.createSolverConfig(idExperiment, config, name);
+        } catch (Exception e) {
+            metrics.add("backend.errors", 1);
+            throw e;
+        } finally {
+            metrics.timeSince("backend.createSolverConfig", start);
+        }
+    }
+
+    @Override
+    public int exists(int idExperiment, ParameterConfiguration config) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return backend.exists(idExperiment, config);
+        } catch (Exception e) {
+            metrics.add("backend.errors", 1);
+            throw e;
+        } finally {
+            metrics.timeSince("backend.exists", start);
+        }
+    }
+
+    @Override
+    public ParameterConfiguration getParameterConfiguration(int idExperiment, int idSolverConfig) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return backend.getParameterConfiguration(idExperiment, idSolverConfig);
+        } catch (Exception e) {
+            metrics.add("backend.errors", 1);
+            throw e;
+        } finally {
+            metrics.timeSince("backend.getParameterConfiguration", start);
+        }
+    }
+
+    @Override
+    public String getSolverConfigName(int idSolverConfig) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return backend.getSolverConfigName(idSolverConfig);
+        } catch (Exception e) {
+            metrics.add("backend.errors", 1);
+            throw e;
+        } finally {
+            metrics.timeSince("backend.getSolverConfigName", start);
+        }
+    }
+
+    @Override
+    public void updateSolverConfigurationName(int idSolverConfig, String name) throws Exception {
+        long start = System.nanoTime();
+        try {
+            backend.updateSolverConfigurationName(idSolverConfig, name);
+        } catch (Exception e) {
+            metrics.add("backend.errors", 1);
+            throw e;
+        } finally {
+            metrics.timeSince("backend.updateSolverConfigurationName", start);
+        }
+    }
+
+    @Override
+    public Float getSolverConfigurationCost(int idSolverConfig) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return backend.getSolverConfigurationCost(idSolverConfig);
+        } catch (Exception e) {
+            metrics.add("backend.errors", 1);
+            throw e;
+        } finally {
+            metrics.timeSince("backend.getSolverConfigurationCost", start);
+        }
+    }
+
+    @Override
+    public void updateSolverConfigurationCost(int idSolverConfig, float cost, CostFunction costFunction) throws Exception {
+        long start = System.nanoTime();
+        try {
+            backend.updateSolverConfigurationCost(idSolverConfig, cost, costFunction);
+        } catch (Exception e) {
+            metrics.add("backend.errors", 1);
+            throw e;
+        } finally {
+            metrics.timeSince("backend.updateSolverConfigurationCost", start);
+        }
+    }
+
+    @Override
+    public List<Integer> getBestConfigurations(int idExperiment, CostFunction costFunction, int no) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return backend.getBestConfigurations(idExperiment, costFunction, no);
+        } catch (Exception e) {
+            metrics.add("backend.errors", 1);
+            throw e;
+        } finally {
+            metrics.timeSince("backend.getBestConfigurations", start);
+        }
+    }
+
+    @Override
+    public int getCourseLength(int idExperiment) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return backend.getCourseLength(idExperiment);
+        } catch (Exception e) {
+            metrics.add("backend.errors", 1);
+            throw e;
+        } finally {
+            metrics.timeSince("backend.getCourseLength", start);
+        }
+    }
+
+    @Override
+    public List<Integer> launchJob(int idExperiment, int idSolverConfig, int[] cpuTimeLimit, int numberOfJobs, Random rng) throws Exception {
+        long start = System.nanoTime();
+        try {
+            List<Integer> jobs = backend.launchJob(idExperiment, idSolverConfig, cpuTimeLimit, numberOfJobs, rng);
+            metrics.add("jobs.launched", jobs.size());
+            return jobs;
+        } catch (Exception e) {
+            metrics.add("backend.errors", 1);
+            throw e;
+        } finally {
+            metrics.timeSince("backend.launchJob", start);
+        }
+    }
+
+    @Override
+    public List<Integer> launchCourseJobs(int idExperiment, int idSolverConfig, int[] cpuTimeLimit, int[] courseIndices) throws Exception {
+        long start = System.nanoTime();
+        try {
+            List<Integer> jobs = backend.launchCourseJobs(idExperiment, idSolverConfig, cpuTimeLimit, courseIndices);
+            metrics.add("jobs.launched", jobs.size());
+            return jobs;
+        } catch (Exception e) {
+            metrics.add("backend.errors", 1);
+            throw e;
+        } finally {
+            metrics.timeSince("backend.launchCourseJobs", start);
+        }
+    }
+
+    @Override
+    public void launchBatch(int idExperiment, LaunchBatch batch, Random rng) throws Exception {
+        long start = System.nanoTime();
+        try {
+            backend.launchBatch(idExperiment, batch, rng);
+            metrics.add("jobs.launched", batch.getJobCount());
+        } catch (Exception e) {
+            metrics.add("backend.errors", 1);
+            throw e;
+        } finally {
+            metrics.timeSince("backend.launchBatch", start);
+        }
+    }
+
+    @Override
+    public Map<Integer, ExperimentResult> getJobsByIDs(List<Integer> ids) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return backend.getJobsByIDs(ids);
+        } catch (Exception e) {
+            metrics.add("backend.errors", 1);
+            throw e;
+        } finally {
+            metrics.timeSince("backend.getJobsByIDs", start);
+        }
+    }
+
+    @Override
+    public List<ExperimentResult> getRuns(int idExperiment, int idSolverConfig) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return backend.getRuns(idExperiment, idSolverConfig);
+        } catch (Exception e) {
+            metrics.add("backend.errors", 1);
+            throw e;
+        } finally {
+            metrics.timeSince("backend.getRuns", start);
+        }
+    }
+
+    @Override
+    public List<ExperimentResult> getCourseRuns(int idExperiment, int idSolverConfig, int length) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return backend.getCourseRuns(idExperiment, idSolverConfig, length);
+        } catch (Exception e) {
+            metrics.add("backend.errors", 1);
+            throw e;
+        } finally {
+            metrics.timeSince("backend.getCourseRuns", start);
+        }
+    }
+
+    @Override
+    public ExperimentResult killJob(int idJob) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return backend.killJob(idJob);
+        } catch (Exception e) {
+            metrics.add("backend.errors", 1);
+            throw e;
+        } finally {
+            metrics.timeSince("backend.killJob", start);
+        }
+    }
+
+    @Override
+    public void setJobPriorities(Map<Integer, Integer> priorities) throws Exception {
+        long start = System.nanoTime();
+        try {
+            backend.setJobPriorities(priorities);
+        } catch (Exception e) {
+            metrics.add("backend.errors", 1);
+            throw e;
+        } finally {
+            metrics.timeSince("backend.setJobPriorities", start);
+        }
+    }
+
+    @Override
+    public int getComputationCoreCount(int idExperiment) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return backend.getComputationCoreCount(idExperiment);
+        } catch (Exception e) {
+            metrics.add("backend.errors", 1);
+            throw e;
+        } finally {
+            metrics.timeSince("backend.getComputationCoreCount", start);
+        }
+    }
+
+    @Override
+    public int getComputationJobCount(int idExperiment) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return backend.getComputationJobCount(idExperiment);
+        } catch (Exception e) {
+            metrics.add("backend.errors", 1);
+            throw e;
+        } finally {
+            metrics.timeSince("backend.getComputationJobCount", start);
+        }
+    }
+
+    @Override
+    public void disconnect() {
+        backend.disconnect();
+    }
+}
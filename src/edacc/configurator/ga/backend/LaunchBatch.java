@@ -0,0 +1,113 @@
+package edacc.configurator.ga.backend;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import edacc.parameterspace.ParameterConfiguration;
+
+/**
+ * New solver configurations and their first jobs that are created together,
+ * e.g. all offspring of a generation or all neighbours of an SLS round.
+ * See EvaluationBackend.launchBatch.
+ */
+public class LaunchBatch {
+    public static class Entry {
+        private final ParameterConfiguration config;
+        private final String namePrefix;
+        private final int[] cpuTimeLimit;
+        private String name;
+        private int idSolverConfig;
+        private List<Integer> jobs;
+
+        Entry(ParameterConfiguration config, String namePrefix, int[] cpuTimeLimit) {
+            this.config = config;
+            this.namePrefix = namePrefix;
+            this.cpuTimeLimit = cpuTimeLimit;
+        }
+
+        public ParameterConfiguration getConfig() {
+            return config;
+        }
+
+        public String getNamePrefix() {
+            return namePrefix;
+        }
+
+        public int[] getCpuTimeLimit() {
+            return cpuTimeLimit;
+        }
+
+        /**
+         * @return name prefix followed by the canonical name of the configuration
+         */
+        public String getName() {
+            return name;
+        }
+
+        public int getIdSolverConfig() {
+            return idSolverConfig;
+        }
+
+        /**
+         * @return IDs of the launched jobs, null if the batch wasn't launched yet
+         */
+        public List<Integer> getJobs() {
+            return jobs;
+        }
+
+        public void setLaunched(String name, int idSolverConfig, List<Integer> jobs) {
+            this.name = name;
+            this.idSolverConfig = idSolverConfig;
+            this.jobs = jobs;
+        }
+    }
+
+    private final List<Entry> entries = new ArrayList<Entry>();
+
+    /**
+     * Adds a new solver configuration to the batch. Its name will be the
+     * prefix followed by the canonical name of the configuration and it gets
+     * one job for each CPU time limit.
+     */
+    public Entry add(ParameterConfiguration config, String namePrefix, int[] cpuTimeLimit) {
+        Entry entry = new Entry(config, namePrefix, cpuTimeLimit);
+        entries.add(entry);
+        return entry;
+    }
+
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * @return number of jobs of all entries
+     */
+    public int getJobCount() {
+        int count = 0;
+        for (Entry entry: entries) count += entry.cpuTimeLimit.length;
+        return count;
+    }
+
+    /**
+     * Launches the entries one at a time with getCanonicalName, createSolverConfig and launchJob,
+     * for backends that don't have a more efficient way.
+     */
+    public void launchEach(EvaluationBackend backend, int idExperiment, Random rng) throws Exception {
+        for (Entry entry: entries) {
+            String name = entry.namePrefix + backend.getCanonicalName(idExperiment, entry.config);
+            int idSolverConfig = backend.createSolverConfig(idExperiment, entry.config, name);
+            List<Integer> jobs = backend.launchJob(idExperiment, idSolverConfig, entry.cpuTimeLimit, entry.cpuTimeLimit.length, rng);
+            entry.setLaunched(name, idSolverConfig, jobs);
+        }
+    }
+}
@@ -0,0 +1,710 @@
+package edacc.configurator.ga.backend;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import edacc.api.APIImpl;
+import edacc.api.costfunctions.CostFunction;
+import edacc.configurator.ga.ConfigurationCodec;
+import edacc.configurator.ga.FitnessCache;
+import edacc.model.ExperimentResult;
+import edacc.model.ResultCode;
+import edacc.model.StatusCode;
+import edacc.parameterspace.Parameter;
+import edacc.parameterspace.ParameterConfiguration;
+import edacc.parameterspace.domain.FlagDomain;
+import edacc.parameterspace.domain.OptionalDomain;
+import edacc.parameterspace.graph.ParameterGraph;
+
+/**
+ * Evaluation backend that runs the solver binary on the cores of the local machine.
+ * There is no database, the backend handles a single experiment and ignores the
+ * experiment IDs passed to it.
+ *
+ * Jobs are run by a pool of workers, one per core. Waiting jobs are started in the order
+ * of their priorities (higher first), jobs with equal priorities in launch order. The solver command is a template
+ * whose tokens ${instance}, ${seed} and ${params} are replaced by the instance path,
+ * the seed and the parameters of the solver configuration (prefix + name, then the value).
+ * The CPU time limit is enforced with ulimit; the CPU time of the solver is measured
+ * with the times builtin of the shell that starts it. The solver runs in its own process
+ * group (setsid, if available); killing a job kills the whole group and its core is only
+ * free again when the shell reaped the solver. A run is SAT/UNSAT if the solver
+ * exits with 10/20 or prints "s SATISFIABLE"/"s UNSATISFIABLE".
+ *
+ * The course consists of numRunsPerInstance runs of every instance in random order
+ * and is extended with random instance/seed pairs if configurations need more runs.
+ * Solver configurations, costs, course entries and finished runs are appended to
+ * a run store file and loaded again on the next start.
+ *
+ * A job whose solver couldn't be started is a launcher crash. After MAX_LAUNCHER_CRASHES
+ * launcher crashes in a row, or if a finished run couldn't be stored, launching and
+ * polling jobs throws; errors of the run store in the calling threads are thrown right away.
+ */
+public class LocalBackend implements EvaluationBackend {
+    private static final String TIMES_MARKER = "EVOTUNE_TIMES";
+    private static final String PID_MARKER = "EVOTUNE_PID ";
+    private static final Pattern TIMES_PATTERN = Pattern.compile("(\\d+)m([\\d.]+)s\\s+(\\d+)m([\\d.]+)s");
+    /** number of launcher crashes in a row after which the backend fails */
+    private static final int MAX_LAUNCHER_CRASHES = 10;
+
+    private class SolverConfig {
+        int id;
+        String encoded;
+        String name;
+        Float cost;
+        String costFunction;
+        int numRuns;
+    }
+
+    private class Job implements Runnable, Comparable<Job> {
+        int id;
+        int idSolverConfig;
+        int courseIndex;
+        int instance;
+        int seed;
+        int cpuTimeLimit;
+        StatusCode status = StatusCode.NOT_STARTED;
+        ResultCode resultCode = LocalExperimentResult.UNKNOWN;
+        float resultTime;
+        long startTime;
+        Process process;
+        /** process ID of the solver, which is also its process group ID if setsid is available */
+        int pid = 0;
+        /** only changed while the job isn't in the queue of the workers */
+        int priority = 0;
+        boolean killed = false;
+
+        @Override
+        public int compareTo(Job o) {
+            if (priority != o.priority) return priority > o.priority ? -1 : 1;
+            return id - o.id;
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (killed) {
+                    synchronized (LocalBackend.this) {
+                        activeJobs--;
+                    }
+                    return;
+                }
+                status = StatusCode.RUNNING;
+                startTime = System.currentTimeMillis();
+            }
+            Exception crash = null;
+            try {
+                execute();
+            } catch (Exception e) {
+                e.printStackTrace();
+                synchronized (this) {
+                    status = killed ? LocalExperimentResult.KILLED : StatusCode.LAUNCHERCRASH;
+                    resultTime = (System.currentTimeMillis() - startTime) / 1000.0f;
+                    if (!killed) crash = e;
+                }
+            }
+            synchronized (LocalBackend.this) {
+                activeJobs--;
+                if (crash == null) {
+                    launcherCrashes = 0;
+                } else if (++launcherCrashes >= MAX_LAUNCHER_CRASHES && failure == null) {
+                    failure = new Exception("The solver couldn't be started " + launcherCrashes + " times in a row.", crash);
+                }
+            }
+            if (killed) return;
+            try {
+                storeRun(this);
+            } catch (IOException e) {
+                e.printStackTrace();
+                synchronized (LocalBackend.this) {
+                    if (failure == null) failure = e;
+                }
+            }
+        }
+
+        private void execute() throws Exception {
+            List<String> command = new ArrayList<String>();
+            command.add("/bin/sh");
+            command.add("-c");
+            command.add("ulimit -t " + Math.max(1, cpuTimeLimit) + "; "
+                    + "if command -v setsid >/dev/null 2>&1; then setsid \"$0\" \"$@\" & else \"$0\" \"$@\" & fi; "
+                    + "echo " + PID_MARKER + "$!; wait $!; rc=$?; echo " + TIMES_MARKER + "; times; exit $rc");
+            command.addAll(solverCommand(this));
+            ProcessBuilder pb = new ProcessBuilder(command);
+            pb.redirectErrorStream(true);
+            synchronized (this) {
+                if (killed) {
+                    status = LocalExperimentResult.KILLED;
+                    return;
+                }
+                process = pb.start();
+            }
+            process.getOutputStream().close();
+            BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream()));
+            boolean sat = false, unsat = false, times = false;
+            float cpuTime = -1;
+            String line;
+            while ((line = out.readLine()) != null) {
+                if (line.startsWith(PID_MARKER)) {
+                    synchronized (this) {
+                        pid = Integer.valueOf(line.substring(PID_MARKER.length()).trim());
+                        // the job was killed before its solver was known
+                        if (killed) killProcessGroup(pid);
+                    }
+                } else if (line.startsWith("s SATISFIABLE")) sat = true;
+                else if (line.startsWith("s UNSATISFIABLE")) unsat = true;
+                else if (line.equals(TIMES_MARKER)) times = true;
+                else if (times) {
+                    // the first line of times is the shell itself, the second one its children
+                    Matcher m = TIMES_PATTERN.matcher(line);
+                    if (m.find()) cpuTime = Integer.valueOf(m.group(1)) * 60 + Float.valueOf(m.group(2))
+                            + Integer.valueOf(m.group(3)) * 60 + Float.valueOf(m.group(4));
+                }
+            }
+            out.close();
+            int exitCode = process.waitFor();
+            float wallTime = (System.currentTimeMillis() - startTime) / 1000.0f;
+
+            synchronized (this) {
+                resultTime = cpuTime >= 0 ? cpuTime : wallTime;
+                if (killed) {
+                    status = LocalExperimentResult.KILLED;
+                } else if (exitCode == 10 || sat) {
+                    status = StatusCode.SUCCESSFUL;
+                    resultCode = LocalExperimentResult.SAT;
+                } else if (exitCode == 20 || unsat) {
+                    status = StatusCode.SUCCESSFUL;
+                    resultCode = LocalExperimentResult.UNSAT;
+                } else if (resultTime >= cpuTimeLimit || exitCode == 128 + 24 || exitCode == 128 + 9) {
+                    // SIGXCPU or SIGKILL after the soft/hard CPU time limit
+                    status = LocalExperimentResult.TIME_LIMIT_EXCEEDED;
+                    resultCode = LocalExperimentResult.TIME_LIMIT;
+                    resultTime = cpuTimeLimit;
+                } else if (exitCode == 0) {
+                    status = StatusCode.SUCCESSFUL;
+                    resultCode = LocalExperimentResult.UNKNOWN;
+                } else {
+                    status = StatusCode.SOLVERCRASH;
+                }
+            }
+        }
+
+        synchronized ExperimentResult toResult() {
+            int runningTime = 0;
+            if (status.equals(StatusCode.RUNNING)) {
+                runningTime = (int) ((System.currentTimeMillis() - startTime) / 1000);
+            }
+            return new LocalExperimentResult(id, 0, idSolverConfig, instance + 1, seed, courseIndex,
+                    status, resultCode, resultTime, runningTime,
+                    startTime == 0 ? null : new Timestamp(startTime), cpuTimeLimit);
+        }
+    }
+
+    private final ParameterGraph pspace;
+    private final String solverCommand;
+    private final List<String> instances;
+    private final String parameterPrefix;
+    private final int cores;
+    private final File runStore;
+    private final ThreadPoolExecutor workers;
+    /** course entries: instance index and seed */
+    private final List<int[]> course = new ArrayList<int[]>();
+    private final Map<String, Integer> configIds = new HashMap<String, Integer>();
+    private final Map<Integer, SolverConfig> configs = new HashMap<Integer, SolverConfig>();
+    private final Map<Integer, Job> jobs = new HashMap<Integer, Job>();
+    private int activeJobs = 0;
+    private int nextJobId = 1;
+    private int nextConfigId = 1;
+    private PrintWriter store;
+    private int launcherCrashes = 0;
+    /** error of the workers that launching and polling jobs throws, null if there was none */
+    private Exception failure = null;
+
+    /**
+     * @param parameterGraphFile XML file of the parameter graph of the solver
+     * @param solverCommand command line template of the solver
+     * @param instances paths of the instances
+     * @param numRunsPerInstance number of runs (seeds) per instance in the course
+     * @param parameterPrefix prefix of the parameter names on the command line, e.g. "-"
+     * @param cores number of jobs that are run in parallel
+     * @param runStore file the solver configurations and runs are stored in, can be null
+     * @param courseSeed seed of the course order and seeds
+     */
+    public LocalBackend(String parameterGraphFile, String solverCommand, List<String> instances,
+            int numRunsPerInstance, String parameterPrefix, int cores, File runStore, long courseSeed) throws Exception {
+        this.pspace = new APIImpl().loadParameterGraphFromFile(parameterGraphFile);
+        if (pspace == null) throw new Exception("Couldn't load parameter graph from " + parameterGraphFile);
+        if (instances.isEmpty()) throw new IllegalArgumentException("No instances given.");
+        this.solverCommand = solverCommand;
+        this.instances = new ArrayList<String>(instances);
+        this.parameterPrefix = parameterPrefix;
+        this.cores = cores;
+        this.runStore = runStore;
+        this.workers = new ThreadPoolExecutor(cores, cores, 0, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<Runnable>());
+
+        if (runStore != null && runStore.exists()) load();
+        if (course.isEmpty()) {
+            Random courseRng = new Random(courseSeed);
+            List<int[]> entries = new ArrayList<int[]>();
+            for (int run = 0; run < numRunsPerInstance; run++) {
+                for (int i = 0; i < instances.size(); i++) {
+                    entries.add(new int[] {i, courseRng.nextInt(Integer.MAX_VALUE)});
+                }
+            }
+            Collections.shuffle(entries, courseRng);
+            for (int[] entry: entries) addCourseEntry(entry);
+        }
+    }
+
+    /**
+     * Reads the instance paths from a file with one path per line or,
+     * if the given file is a directory, uses all files in it.
+     */
+    public static List<String> readInstances(File file) throws IOException {
+        List<String> instances = new ArrayList<String>();
+        if (file.isDirectory()) {
+            File[] files = file.listFiles();
+            Arrays.sort(files);
+            for (File f: files) {
+                if (f.isFile()) instances.add(f.getPath());
+            }
+        } else {
+            BufferedReader in = new BufferedReader(new FileReader(file));
+            try {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (line.trim().length() > 0) instances.add(line.trim());
+                }
+            } finally {
+                in.close();
+            }
+        }
+        return instances;
+    }
+
+    private void load() throws Exception {
+        BufferedReader in = new BufferedReader(new FileReader(runStore));
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] f = line.split("\t", -1);
+                // the last line can be incomplete after a crash, lines that can't be parsed
+                // or refer to unknown solver configurations or course entries are skipped
+                try {
+                    if ("I".equals(f[0]) && f.length == 4) {
+                        // a skipped entry would shift the indices of the following ones
+                        if (Integer.parseInt(f[1]) == course.size()) {
+                            course.add(new int[] {Integer.valueOf(f[2]), Integer.valueOf(f[3])});
+                        }
+                    } else if ("C".equals(f[0]) && f.length == 4) {
+                        SolverConfig sc = new SolverConfig();
+                        sc.id = Integer.valueOf(f[1]);
+                        // also the IDs of skipped configurations are never reused, their runs are still stored
+                        nextConfigId = Math.max(nextConfigId, sc.id + 1);
+                        sc.encoded = f[2];
+                        sc.name = f[3];
+                        ParameterConfiguration config = ConfigurationCodec.decode(pspace, sc.encoded);
+                        configIds.put(FitnessCache.canonicalKey(config), sc.id);
+                        configs.put(sc.id, sc);
+                    } else if ("N".equals(f[0]) && f.length == 3) {
+                        SolverConfig sc = configs.get(Integer.valueOf(f[1]));
+                        if (sc != null) sc.name = f[2];
+                    } else if ("K".equals(f[0]) && f.length == 4) {
+                        SolverConfig sc = configs.get(Integer.valueOf(f[1]));
+                        if (sc != null) {
+                            sc.cost = Float.valueOf(f[2]);
+                            sc.costFunction = f[3];
+                        }
+                    } else if ("R".equals(f[0]) && f.length == 8) {
+                        Job job = new Job();
+                        job.id = Integer.valueOf(f[1]);
+                        job.idSolverConfig = Integer.valueOf(f[2]);
+                        job.courseIndex = Integer.valueOf(f[3]);
+                        if (!configs.containsKey(job.idSolverConfig) || job.courseIndex >= course.size()) continue;
+                        job.instance = course.get(job.courseIndex)[0];
+                        job.seed = course.get(job.courseIndex)[1];
+                        job.status = LocalExperimentResult.statusCode(Integer.valueOf(f[4]));
+                        job.resultCode = LocalExperimentResult.resultCode(Integer.valueOf(f[5]));
+                        job.resultTime = Float.valueOf(f[6]);
+                        job.cpuTimeLimit = Integer.valueOf(f[7]);
+                        jobs.put(job.id, job);
+                        nextJobId = Math.max(nextJobId, job.id + 1);
+                    }
+                } catch (IllegalArgumentException e) {
+                    // incomplete number or configuration
+                }
+            }
+        } finally {
+            in.close();
+        }
+        // runs that were launched but didn't finish before the last shutdown are lost,
+        // count the stored runs of each configuration
+        for (Job job: jobs.values()) {
+            SolverConfig sc = configs.get(job.idSolverConfig);
+            if (sc != null) sc.numRuns = Math.max(sc.numRuns, job.courseIndex + 1);
+        }
+    }
+
+    /**
+     * @return true if the last line of the file isn't terminated by a line break
+     */
+    private static boolean endsIncomplete(File file) throws IOException {
+        if (!file.exists() || file.length() == 0) return false;
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            in.seek(in.length() - 1);
+            return in.read() != '\n';
+        } finally {
+            in.close();
+        }
+    }
+
+    private synchronized void append(String line) throws IOException {
+        if (runStore == null) return;
+        if (store == null) {
+            boolean incomplete = endsIncomplete(runStore);
+            store = new PrintWriter(new FileWriter(runStore, true));
+            // don't continue an incomplete last line of a crashed session
+            if (incomplete) store.println();
+        }
+        store.println(line);
+        store.flush();
+        // PrintWriter doesn't throw
+        if (store.checkError()) throw new IOException("Couldn't write to the run store " + runStore);
+    }
+
+    private synchronized void checkFailure() throws Exception {
+        if (failure != null) throw new Exception("The local backend failed.", failure);
+    }
+
+    private void addCourseEntry(int[] entry) throws IOException {
+        course.add(entry);
+        append("I\t" + (course.size() - 1) + "\t" + entry[0] + "\t" + entry[1]);
+    }
+
+    private void storeRun(Job job) throws IOException {
+        StringBuilder sb = new StringBuilder("R");
+        synchronized (job) {
+            sb.append('\t').append(job.id).append('\t').append(job.idSolverConfig).append('\t').append(job.courseIndex)
+              .append('\t').append(job.status.getStatusCode()).append('\t').append(job.resultCode.getResultCode())
+              .append('\t').append(job.resultTime).append('\t').append(job.cpuTimeLimit);
+        }
+        append(sb.toString());
+    }
+
+    private static String clean(String s) {
+        return s == null ? "" : s.replace('\t', ' ').replace('\n', ' ');
+    }
+
+    /**
+     * Command line of a job: the solver command template with instance, seed and parameters filled in.
+     */
+    private synchronized List<String> solverCommand(Job job) throws Exception {
+        ParameterConfiguration config = ConfigurationCodec.decode(pspace, configs.get(job.idSolverConfig).encoded);
+        List<String> command = new ArrayList<String>();
+        for (String token: solverCommand.trim().split("\\s+")) {
+            if ("${params}".equals(token)) command.addAll(parameterArguments(config));
+            else command.add(token.replace("${instance}", instances.get(job.instance)).replace("${seed}", String.valueOf(job.seed)));
+        }
+        return command;
+    }
+
+    private List<String> parameterArguments(ParameterConfiguration config) {
+        List<Parameter> params = new ArrayList<Parameter>(config.getParameter_instances().keySet());
+        Collections.sort(params);
+        List<String> args = new ArrayList<String>();
+        for (Parameter p: params) {
+            Object value = config.getParameterValue(p);
+            if (value == null || OptionalDomain.OPTIONS.NOT_SPECIFIED.equals(value) || FlagDomain.FLAGS.OFF.equals(value)) continue;
+            args.add(parameterPrefix + p.getName());
+            if (!FlagDomain.FLAGS.ON.equals(value)) args.add(value.toString());
+        }
+        return args;
+    }
+
+    @Override
+    public ParameterGraph loadParameterGraph(int idExperiment) throws Exception {
+        return pspace;
+    }
+
+    @Override
+    public String getCanonicalName(int idExperiment, ParameterConfiguration config) throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (String arg: parameterArguments(config)) {
+            if (sb.length() > 0) sb.append(' ');
+            sb.append(arg);
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public synchronized int createSolverConfig(int idExperiment, ParameterConfiguration config, String name) throws Exception {
+        SolverConfig sc = new SolverConfig();
+        sc.id = nextConfigId++;
+        sc.encoded = ConfigurationCodec.encode(config);
+        sc.name = clean(name);
+        configs.put(sc.id, sc);
+        configIds.put(FitnessCache.canonicalKey(config), sc.id);
+        append("C\t" + sc.id + "\t" + sc.encoded + "\t" + sc.name);
+        return sc.id;
+    }
+
+    @Override
+    public synchronized int exists(int idExperiment, ParameterConfiguration config) throws Exception {
+        Integer id = configIds.get(FitnessCache.canonicalKey(config));
+        return id == null ? 0 : id;
+    }
+
+    @Override
+    public synchronized ParameterConfiguration getParameterConfiguration(int idExperiment, int idSolverConfig) throws Exception {
+        SolverConfig sc = configs.get(idSolverConfig);
+        return sc == null ? null : ConfigurationCodec.decode(pspace, sc.encoded);
+    }
+
+    @Override
+    public synchronized String getSolverConfigName(int idSolverConfig) throws Exception {
+        SolverConfig sc = configs.get(idSolverConfig);
+        return sc == null ? null : sc.name;
+    }
+
+    @Override
+    public synchronized void updateSolverConfigurationName(int idSolverConfig, String name) throws Exception {
+        configs.get(idSolverConfig).name = clean(name);
+        append("N\t" + idSolverConfig + "\t" + clean(name));
+    }
+
+    @Override
+    public synchronized Float getSolverConfigurationCost(int idSolverConfig) throws Exception {
+        SolverConfig sc = configs.get(idSolverConfig);
+        return sc == null ? null : sc.cost;
+    }
+
+    @Override
+    public synchronized void updateSolverConfigurationCost(int idSolverConfig, float cost, CostFunction costFunction) throws Exception {
+        SolverConfig sc = configs.get(idSolverConfig);
+        sc.cost = cost;
+        sc.costFunction = costFunction.databaseRepresentation();
+        append("K\t" + idSolverConfig + "\t" + cost + "\t" + sc.costFunction);
+    }
+
+    @Override
+    public synchronized List<Integer> getBestConfigurations(int idExperiment, CostFunction costFunction, int no) throws Exception {
+        List<SolverConfig> evaluated = new ArrayList<SolverConfig>();
+        for (SolverConfig sc: configs.values()) {
+            if (sc.cost != null && costFunction.databaseRepresentation().equals(sc.costFunction)) evaluated.add(sc);
+        }
+        Collections.sort(evaluated, new Comparator<SolverConfig>() {
+            @Override
+            public int compare(SolverConfig a, SolverConfig b) {
+                return a.cost.compareTo(b.cost);
+            }
+        });
+        List<Integer> best = new ArrayList<Integer>();
+        for (int i = 0; i < Math.min(no, evaluated.size()); i++) best.add(evaluated.get(i).id);
+        return best;
+    }
+
+    @Override
+    public synchronized int getCourseLength(int idExperiment) throws Exception {
+        return course.size();
+    }
+
+    @Override
+    public synchronized List<Integer> launchJob(int idExperiment, int idSolverConfig, int[] cpuTimeLimit, int numberOfJobs, Random rng) throws Exception {
+        checkFailure();
+        SolverConfig sc = configs.get(idSolverConfig);
+        List<Integer> ids = new ArrayList<Integer>();
+        for (int i = 0; i < numberOfJobs; i++) {
+            int courseIndex = sc.numRuns;
+            while (courseIndex >= course.size()) {
+                addCourseEntry(new int[] {rng.nextInt(instances.size()), rng.nextInt(Integer.MAX_VALUE)});
+            }
+            ids.add(launch(sc, courseIndex, cpuTimeLimit[i]));
+        }
+        return ids;
+    }
+
+    @Override
+    public synchronized List<Integer> launchCourseJobs(int idExperiment, int idSolverConfig, int[] cpuTimeLimit, int[] courseIndices) throws Exception {
+        checkFailure();
+        SolverConfig sc = configs.get(idSolverConfig);
+        List<Integer> ids = new ArrayList<Integer>();
+        for (int i = 0; i < courseIndices.length; i++) {
+            if (courseIndices[i] >= course.size()) throw new IllegalArgumentException("The course has no entry " + courseIndices[i]);
+            Iterator<Job> it = jobs.values().iterator();
+            while (it.hasNext()) {
+                Job job = it.next();
+                if (job.idSolverConfig == idSolverConfig && job.courseIndex == courseIndices[i]) it.remove();
+            }
+            ids.add(launch(sc, courseIndices[i], cpuTimeLimit[i]));
+        }
+        return ids;
+    }
+
+    /**
+     * Queues a job of the solver configuration on the given course entry.
+     * @return ID of the job
+     */
+    private int launch(SolverConfig sc, int courseIndex, int cpuTimeLimit) {
+        Job job = new Job();
+        job.id = nextJobId++;
+        job.idSolverConfig = sc.id;
+        job.courseIndex = courseIndex;
+        job.instance = course.get(courseIndex)[0];
+        job.seed = course.get(courseIndex)[1];
+        job.cpuTimeLimit = cpuTimeLimit;
+        sc.numRuns = Math.max(sc.numRuns, courseIndex + 1);
+        jobs.put(job.id, job);
+        activeJobs++;
+        workers.execute(job);
+        return job.id;
+    }
+
+    @Override
+    public synchronized void launchBatch(int idExperiment, LaunchBatch batch, Random rng) throws Exception {
+        batch.launchEach(this, idExperiment, rng);
+    }
+
+    @Override
+    public Map<Integer, ExperimentResult> getJobsByIDs(List<Integer> ids) throws Exception {
+        List<Job> list = new ArrayList<Job>();
+        synchronized (this) {
+            checkFailure();
+            for (Integer id: ids) {
+                Job job = jobs.get(id);
+                if (job != null) list.add(job);
+            }
+        }
+        Map<Integer, ExperimentResult> results = new HashMap<Integer, ExperimentResult>();
+        for (Job job: list) results.put(job.id, job.toResult());
+        return results;
+    }
+
+    @Override
+    public List<ExperimentResult> getRuns(int idExperiment, int idSolverConfig) throws Exception {
+        List<Job> list = new ArrayList<Job>();
+        synchronized (this) {
+            for (Job job: jobs.values()) {
+                if (job.idSolverConfig == idSolverConfig) list.add(job);
+            }
+        }
+        Collections.sort(list, new Comparator<Job>() {
+            @Override
+            public int compare(Job a, Job b) {
+                return a.courseIndex - b.courseIndex;
+            }
+        });
+        List<ExperimentResult> results = new ArrayList<ExperimentResult>();
+        for (Job job: list) results.add(job.toResult());
+        return results;
+    }
+
+    @Override
+    public List<ExperimentResult> getCourseRuns(int idExperiment, int idSolverConfig, int length) throws Exception {
+        Job[] list = new Job[length];
+        synchronized (this) {
+            for (Job job: jobs.values()) {
+                if (job.idSolverConfig != idSolverConfig || job.courseIndex >= length) continue;
+                // a replaced run can still be in the run store, the later job replaced it
+                if (list[job.courseIndex] == null || job.id > list[job.courseIndex].id) list[job.courseIndex] = job;
+            }
+        }
+        List<ExperimentResult> results = new ArrayList<ExperimentResult>();
+        for (Job job: list) results.add(job == null ? null : job.toResult());
+        return results;
+    }
+
+    @Override
+    public ExperimentResult killJob(int idJob) throws Exception {
+        Job job;
+        synchronized (this) {
+            job = jobs.get(idJob);
+        }
+        if (job == null) return null;
+        synchronized (job) {
+            if (job.status.equals(StatusCode.NOT_STARTED)) {
+                job.killed = true;
+                job.status = LocalExperimentResult.KILLED;
+                if (workers.remove(job)) {
+                    synchronized (this) {
+                        activeJobs--;
+                    }
+                }
+            } else if (job.status.equals(StatusCode.RUNNING)) {
+                // the shell reaps the solver and exits, then the worker frees the core
+                job.killed = true;
+                if (job.pid != 0) killProcessGroup(job.pid);
+            }
+        }
+        return job.toResult();
+    }
+
+    /**
+     * Kills the process group of the solver, or only the solver if it isn't a group leader.
+     */
+    private static void killProcessGroup(int pid) throws Exception {
+        Process kill = new ProcessBuilder("/bin/sh", "-c", "kill -KILL -" + pid + " 2>/dev/null || kill -KILL " + pid).start();
+        kill.getOutputStream().close();
+        kill.waitFor();
+    }
+
+    @Override
+    public void setJobPriorities(Map<Integer, Integer> priorities) throws Exception {
+        for (Map.Entry<Integer, Integer> e: priorities.entrySet()) {
+            Job job;
+            synchronized (this) {
+                job = jobs.get(e.getKey());
+            }
+            if (job == null) continue;
+            synchronized (job) {
+                // the queue doesn't notice priority changes, waiting jobs are queued again
+                if (workers.remove(job)) {
+                    job.priority = e.getValue();
+                    workers.execute(job);
+                } else {
+                    job.priority = e.getValue();
+                }
+            }
+        }
+    }
+
+    @Override
+    public int getComputationCoreCount(int idExperiment) throws Exception {
+        return cores;
+    }
+
+    @Override
+    public synchronized int getComputationJobCount(int idExperiment) throws Exception {
+        return activeJobs;
+    }
+
+    @Override
+    public void disconnect() {
+        workers.shutdownNow();
+        synchronized (this) {
+            if (store != null) store.close();
+            store = null;
+        }
+    }
+}
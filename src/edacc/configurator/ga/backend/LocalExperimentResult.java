@@ -0,0 +1,67 @@
+package edacc.configurator.ga.backend;
+
+import java.sql.Timestamp;
+
+import edacc.model.ExperimentResult;
+import edacc.model.ResultCode;
+import edacc.model.StatusCode;
+
+/**
+ * Result of a job that wasn't loaded from an EDACC database, e.g. a job run by the
+ * LocalBackend. Also defines the status and result codes EDACC uses for solver results
+ * and exceeded limits, which edacc.model doesn't provide as constants.
+ */
+public class LocalExperimentResult extends ExperimentResult {
+    private static final long serialVersionUID = 1L;
+
+    private static class Status extends StatusCode {
+        private static final long serialVersionUID = 1L;
+
+        Status(int code, String description) {
+            super(code, description);
+        }
+    }
+
+    private static class Result extends ResultCode {
+        private static final long serialVersionUID = 1L;
+
+        Result(int code, String description) {
+            super(code, description);
+        }
+    }
+
+    public static final StatusCode TIME_LIMIT_EXCEEDED = new Status(21, "time limit exceeded");
+    /** local status of jobs that were killed by the configurator */
+    public static final StatusCode KILLED = new Status(-6, "killed");
+
+    public static final ResultCode SAT = new Result(11, "SAT");
+    public static final ResultCode UNSAT = new Result(10, "UNSAT");
+    public static final ResultCode UNKNOWN = ResultCode.UNKNOWN;
+    public static final ResultCode TIME_LIMIT = new Result(-21, "time limit exceeded");
+
+    public static StatusCode statusCode(int code) {
+        for (StatusCode status: StatusCode.CONST) {
+            if (status.getStatusCode() == code) return status;
+        }
+        if (code == TIME_LIMIT_EXCEEDED.getStatusCode()) return TIME_LIMIT_EXCEEDED;
+        if (code == KILLED.getStatusCode()) return KILLED;
+        return new Status(code, "unknown");
+    }
+
+    public static ResultCode resultCode(int code) {
+        if (code == SAT.getResultCode()) return SAT;
+        if (code == UNSAT.getResultCode()) return UNSAT;
+        if (code == TIME_LIMIT.getResultCode()) return TIME_LIMIT;
+        if (code == UNKNOWN.getResultCode()) return UNKNOWN;
+        return new Result(code, "unknown");
+    }
+
+    public LocalExperimentResult(int idJob, int idExperiment, int idSolverConfig, int idInstance, int seed, int run,
+            StatusCode status, ResultCode resultCode, float resultTime, int runningTime,
+            Timestamp startTime, int cpuTimeLimit) {
+        super(run, 0, 0, status, seed, resultCode, resultTime, idSolverConfig, idExperiment, idInstance,
+                startTime, cpuTimeLimit, -1, -1, -1, -1, -1);
+        setId(idJob);
+        setRunningTime(runningTime);
+    }
+}
@@ -0,0 +1,68 @@
+package edacc.configurator.ga.backend;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import edacc.configurator.ga.SimulatedClock;
+import edacc.parameterspace.ParameterConfiguration;
+import edacc.parameterspace.graph.ParameterGraph;
+
+/**
+ * Evaluation backend that replays the recorded runs of a run history instead of running
+ * the solver (see ReplayLog), e.g. to compare GA settings in minutes instead of days.
+ *
+ * The runs take place on a simulated cluster of the given number of cores (see
+ * SimulatedBackend), in the time of a simulated clock that the job tracker advances.
+ * A job replays the recorded run of the nearest recorded configuration that ran on its
+ * instance/seed pair. With the same run history, settings and seed a replay always
+ * gives the same result.
+ */
+public class ReplayBackend extends SimulatedBackend {
+    /** number of nearest recorded configurations whose runs a configuration uses */
+    private static final int NEIGHBOURS = 10;
+
+    private final ReplayLog log;
+    /** recorded configurations whose runs are replayed for each solver configuration, the nearest first */
+    private final Map<Integer, int[]> neighbours = new HashMap<Integer, int[]>();
+
+    /**
+     * @param log recorded runs, can be shared by several backends
+     * @param cores number of jobs that run in parallel
+     * @param clock simulated time of the runs, advanced by the job tracker
+     */
+    public ReplayBackend(ReplayLog log, int cores, SimulatedClock clock) {
+        super(cores, clock);
+        this.log = log;
+    }
+
+    @Override
+    public ParameterGraph loadParameterGraph(int idExperiment) throws Exception {
+        return log.getParameterGraph();
+    }
+
+    @Override
+    public synchronized int createSolverConfig(int idExperiment, ParameterConfiguration config, String name) throws Exception {
+        int id = super.createSolverConfig(idExperiment, config, name);
+        neighbours.put(id, log.neighbours(config, NEIGHBOURS));
+        return id;
+    }
+
+    /**
+     * The course of the run history is repeated if a configuration needs more runs than it has entries.
+     */
+    @Override
+    public int getCourseLength(int idExperiment) throws Exception {
+        return log.getCourseLength();
+    }
+
+    @Override
+    protected int[] getCourseEntry(int index) {
+        return log.getCourseEntry(index);
+    }
+
+    @Override
+    protected Run run(int idSolverConfig, ParameterConfiguration config, int instance, int seed) {
+        ReplayLog.Run run = log.lookup(neighbours.get(idSolverConfig), instance, seed);
+        return new Run(LocalExperimentResult.statusCode(run.status), LocalExperimentResult.resultCode(run.resultCode), run.resultTime);
+    }
+}
@@ -0,0 +1,202 @@
+package edacc.configurator.ga.backend;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edacc.configurator.ga.ConfigurationCodec;
+import edacc.configurator.ga.FitnessCache;
+import edacc.configurator.ga.Genotype;
+import edacc.configurator.ga.RunHistory;
+import edacc.model.ExperimentResult;
+import edacc.parameterspace.Parameter;
+import edacc.parameterspace.ParameterConfiguration;
+import edacc.parameterspace.graph.ParameterGraph;
+
+/**
+ * Lookup table of the recorded runs of a run history (see RunHistory), the source of
+ * the results of a ReplayBackend. The table is read-only and can be shared by the
+ * backends of many replayed sessions.
+ *
+ * The course is the sequence of instance/seed pairs of the configuration with the most
+ * runs (in job order), followed by the pairs only other configurations ran.
+ *
+ * Configurations that weren't recorded get the results of the nearest recorded
+ * configuration that ran the instance/seed pair. The distance of two configurations (see
+ * Genotype) normalizes the numeric values with the bounds of the recorded configurations.
+ */
+public class ReplayLog {
+    /** recorded result of a run */
+    static class Run {
+        final int status;
+        final int resultCode;
+        final float resultTime;
+        final int cpuTimeLimit;
+
+        Run(int status, int resultCode, float resultTime, int cpuTimeLimit) {
+            this.status = status;
+            this.resultCode = resultCode;
+            this.resultTime = resultTime;
+            this.cpuTimeLimit = cpuTimeLimit;
+        }
+    }
+
+    private final ParameterGraph pspace;
+    private final Parameter[] parameters;
+    /** scale of each parameter by the bounds of the recorded configurations */
+    private final double[] scale;
+    /** recorded configurations with runs, in the order of their IDs */
+    private final int[] ids;
+    private final Genotype[] genotypes;
+    private final Map<String, Integer> configIds = new HashMap<String, Integer>();
+    /** runs of each recorded configuration by instance/seed pair */
+    private final Map<Integer, Map<Long, Run>> runs = new HashMap<Integer, Map<Long, Run>>();
+    private final List<int[]> course = new ArrayList<int[]>();
+
+    public ReplayLog(ParameterGraph pspace, RunHistory history) throws Exception {
+        this.pspace = pspace;
+        parameters = Genotype.parameters(pspace);
+
+        // runs of each configuration in job order
+        Map<Integer, List<Integer>> runsByConfig = new HashMap<Integer, List<Integer>>();
+        for (int run = 0; run < history.size(); run++) {
+            int idSolverConfig = history.getIdSolverConfig(run);
+            List<Integer> list = runsByConfig.get(idSolverConfig);
+            if (list == null) {
+                list = new ArrayList<Integer>();
+                runsByConfig.put(idSolverConfig, list);
+            }
+            list.add(run);
+        }
+        Map<Integer, ParameterConfiguration> configs = new LinkedHashMap<Integer, ParameterConfiguration>();
+        for (Map.Entry<Integer, String> e: history.readConfigurations().entrySet()) {
+            if (runsByConfig.containsKey(e.getKey())) configs.put(e.getKey(), ConfigurationCodec.decode(pspace, e.getValue()));
+        }
+        if (configs.isEmpty()) throw new IllegalArgumentException("The run history doesn't have runs of recorded configurations.");
+
+        final RunHistory h = history;
+        Comparator<Integer> byJob = new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return h.getIdJob(a) - h.getIdJob(b);
+            }
+        };
+        List<Integer> longest = null;
+        Set<Long> pairs = new LinkedHashSet<Long>();
+        for (int idSolverConfig: configs.keySet()) {
+            List<Integer> list = runsByConfig.get(idSolverConfig);
+            Collections.sort(list, byJob);
+            Map<Long, Run> byPair = new HashMap<Long, Run>();
+            for (int run: list) {
+                ExperimentResult result = history.getResult(run);
+                long pair = pair(result.getInstanceId(), result.getSeed());
+                byPair.put(pair, new Run(result.getStatus().getStatusCode(), result.getResultCode().getResultCode(),
+                        result.getResultTime(), result.getCPUTimeLimit()));
+                pairs.add(pair);
+            }
+            runs.put(idSolverConfig, byPair);
+            if (longest == null || list.size() > longest.size()) longest = list;
+        }
+        Set<Long> inCourse = new LinkedHashSet<Long>();
+        for (int run: longest) inCourse.add(pair(history.getIdInstance(run), history.getSeed(run)));
+        inCourse.addAll(pairs);
+        for (long pair: inCourse) course.add(new int[] {(int) (pair >> 32), (int) pair});
+
+        ids = new int[configs.size()];
+        genotypes = new Genotype[configs.size()];
+        double[] min = new double[parameters.length];
+        double[] max = new double[parameters.length];
+        Arrays.fill(min, Double.POSITIVE_INFINITY);
+        Arrays.fill(max, Double.NEGATIVE_INFINITY);
+        int i = 0;
+        for (Map.Entry<Integer, ParameterConfiguration> e: configs.entrySet()) {
+            ids[i] = e.getKey();
+            genotypes[i] = Genotype.encode(parameters, e.getValue());
+            for (int p = 0; p < parameters.length; p++) {
+                double x = genotypes[i].getNumeric(p);
+                if (Double.isNaN(x)) continue;
+                min[p] = Math.min(min[p], x);
+                max[p] = Math.max(max[p], x);
+            }
+            configIds.put(FitnessCache.canonicalKey(e.getValue()), e.getKey());
+            i++;
+        }
+        scale = new double[parameters.length];
+        for (int p = 0; p < parameters.length; p++) scale[p] = Genotype.scale(min[p], max[p]);
+    }
+
+    private static long pair(int idInstance, int seed) {
+        return ((long) idInstance << 32) | (seed & 0xffffffffL);
+    }
+
+    public ParameterGraph getParameterGraph() {
+        return pspace;
+    }
+
+    public int getCourseLength() {
+        return course.size();
+    }
+
+    /**
+     * @return instance ID and seed of the course entry
+     */
+    int[] getCourseEntry(int index) {
+        return course.get(index);
+    }
+
+    /**
+     * @return number of recorded configurations with runs
+     */
+    public int getNumConfigurations() {
+        return ids.length;
+    }
+
+    /**
+     * @return IDs of the n nearest recorded configurations, the nearest first.
+     * A recorded configuration is its own nearest configuration.
+     */
+    int[] neighbours(ParameterConfiguration config, int n) {
+        Integer recorded = configIds.get(FitnessCache.canonicalKey(config));
+        Genotype query = Genotype.encode(parameters, config);
+        final double[] distance = new double[ids.length];
+        List<Integer> order = new ArrayList<Integer>();
+        for (int i = 0; i < ids.length; i++) {
+            distance[i] = recorded != null && recorded == ids[i] ? -1 : query.distance(genotypes[i], scale, Double.POSITIVE_INFINITY);
+            order.add(i);
+        }
+        Collections.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Double.compare(distance[a], distance[b]);
+            }
+        });
+        int[] nearest = new int[Math.min(n, ids.length)];
+        for (int i = 0; i < nearest.length; i++) nearest[i] = ids[order.get(i)];
+        return nearest;
+    }
+
+    /**
+     * @param neighbours configurations whose runs are used, the first one that ran the pair
+     * @return recorded run of the instance/seed pair
+     */
+    Run lookup(int[] neighbours, int idInstance, int seed) {
+        long pair = pair(idInstance, seed);
+        for (int idSolverConfig: neighbours) {
+            Run run = runs.get(idSolverConfig).get(pair);
+            if (run != null) return run;
+        }
+        // none of the neighbours ran the pair, but some configuration did because it is on the course
+        for (int idSolverConfig: ids) {
+            Run run = runs.get(idSolverConfig).get(pair);
+            if (run != null) return run;
+        }
+        throw new IllegalStateException("No run of instance " + idInstance + " with seed " + seed);
+    }
+}
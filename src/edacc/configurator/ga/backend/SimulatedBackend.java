@@ -0,0 +1,388 @@
+package edacc.configurator.ga.backend;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import edacc.api.costfunctions.CostFunction;
+import edacc.configurator.ga.Clock;
+import edacc.configurator.ga.ConfigurationCodec;
+import edacc.configurator.ga.FitnessCache;
+import edacc.model.ExperimentResult;
+import edacc.model.ResultCode;
+import edacc.model.StatusCode;
+import edacc.parameterspace.ParameterConfiguration;
+
+/**
+ * In-memory evaluation backend that runs the jobs on a simulated cluster instead of
+ * running the solver. Like the LocalBackend there is no database and the experiment
+ * IDs are ignored. Subclasses provide the parameter graph, the instance course and
+ * the result of each run (see ReplayBackend).
+ *
+ * The cluster has the given number of cores: waiting jobs are started in the order of
+ * their priorities (higher first, then launch order) when a core is free and finish
+ * after the CPU time of their result, in the time of the given clock. A run that takes
+ * longer than the CPU time limit of the job (or hit its own, lower limit) exceeds the
+ * time limit of the job.
+ */
+public abstract class SimulatedBackend implements EvaluationBackend {
+    /**
+     * Result of a simulated run without the CPU time limit of the job.
+     */
+    public static class Run {
+        final StatusCode status;
+        final ResultCode resultCode;
+        final float resultTime;
+
+        public Run(StatusCode status, ResultCode resultCode, float resultTime) {
+            this.status = status;
+            this.resultCode = resultCode;
+            this.resultTime = resultTime;
+        }
+    }
+
+    private class SolverConfig {
+        int id;
+        ParameterConfiguration config;
+        String name;
+        Float cost;
+        String costFunction;
+        int numRuns;
+    }
+
+    private class Job implements Comparable<Job> {
+        int id;
+        int idSolverConfig;
+        int courseIndex;
+        int instance;
+        int seed;
+        int cpuTimeLimit;
+        int priority = 0;
+        StatusCode status = StatusCode.NOT_STARTED;
+        ResultCode resultCode = LocalExperimentResult.UNKNOWN;
+        float resultTime;
+        long startTime;
+        long finishTime;
+        /** simulated result, set when the job starts */
+        StatusCode finalStatus;
+        ResultCode finalResultCode;
+        float finalTime;
+
+        @Override
+        public int compareTo(Job o) {
+            if (priority != o.priority) return priority > o.priority ? -1 : 1;
+            return id - o.id;
+        }
+
+        ExperimentResult toResult() {
+            int runningTime = 0;
+            if (status.equals(StatusCode.RUNNING)) {
+                runningTime = (int) ((clock.currentTimeMillis() - startTime) / 1000);
+            }
+            return new LocalExperimentResult(id, 0, idSolverConfig, instance, seed, courseIndex,
+                    status, resultCode, resultTime, runningTime,
+                    status.equals(StatusCode.NOT_STARTED) ? null : new Timestamp(startTime), cpuTimeLimit);
+        }
+    }
+
+    private final int cores;
+    private final Clock clock;
+    private final Map<String, Integer> configIds = new HashMap<String, Integer>();
+    private final Map<Integer, SolverConfig> configs = new HashMap<Integer, SolverConfig>();
+    private final Map<Integer, Job> jobs = new HashMap<Integer, Job>();
+    private final PriorityQueue<Job> waiting = new PriorityQueue<Job>();
+    private final PriorityQueue<Job> running = new PriorityQueue<Job>(11, new Comparator<Job>() {
+        @Override
+        public int compare(Job a, Job b) {
+            if (a.finishTime != b.finishTime) return a.finishTime < b.finishTime ? -1 : 1;
+            return a.id - b.id;
+        }
+    });
+    private int nextJobId = 1;
+    private int nextConfigId = 1;
+
+    /**
+     * @param cores number of jobs that run in parallel
+     * @param clock time of the runs, e.g. a simulated clock that the job tracker advances
+     */
+    protected SimulatedBackend(int cores, Clock clock) {
+        this.cores = cores;
+        this.clock = clock;
+    }
+
+    /**
+     * @return instance ID and seed of the given entry of the course, the entries
+     * are repeated if a configuration needs more runs than the course has
+     */
+    protected abstract int[] getCourseEntry(int index);
+
+    /**
+     * @return result of the run of the solver configuration on the instance/seed pair,
+     * called when the job starts
+     */
+    protected abstract Run run(int idSolverConfig, ParameterConfiguration config, int instance, int seed);
+
+    /**
+     * Advances the simulated cluster to the current time of the clock: finishes the
+     * running jobs that are done and starts waiting jobs on the cores that became free.
+     */
+    private void simulate() {
+        long now = clock.currentTimeMillis();
+        // jobs only wait while all cores are busy, so they start when a running job finishes
+        long time = now;
+        while (true) {
+            while (running.size() < cores && !waiting.isEmpty()) start(waiting.poll(), time);
+            Job next = running.peek();
+            if (next == null || next.finishTime > now) break;
+            running.poll();
+            time = next.finishTime;
+            next.status = next.finalStatus;
+            next.resultCode = next.finalResultCode;
+            next.resultTime = next.finalTime;
+        }
+    }
+
+    private void start(Job job, long time) {
+        SolverConfig sc = configs.get(job.idSolverConfig);
+        Run run = run(sc.id, sc.config, job.instance, job.seed);
+        boolean timeout = run.status.getStatusCode() == LocalExperimentResult.TIME_LIMIT_EXCEEDED.getStatusCode()
+                || run.resultTime > job.cpuTimeLimit;
+        if (timeout) {
+            job.finalStatus = LocalExperimentResult.TIME_LIMIT_EXCEEDED;
+            job.finalResultCode = LocalExperimentResult.TIME_LIMIT;
+            job.finalTime = job.cpuTimeLimit;
+        } else {
+            job.finalStatus = run.status;
+            job.finalResultCode = run.resultCode;
+            job.finalTime = run.resultTime;
+        }
+        job.status = StatusCode.RUNNING;
+        job.startTime = time;
+        job.finishTime = time + Math.max(1, Math.round(job.finalTime * 1000.0));
+        running.add(job);
+    }
+
+    @Override
+    public String getCanonicalName(int idExperiment, ParameterConfiguration config) throws Exception {
+        return ConfigurationCodec.encode(config);
+    }
+
+    @Override
+    public synchronized int createSolverConfig(int idExperiment, ParameterConfiguration config, String name) throws Exception {
+        SolverConfig sc = new SolverConfig();
+        sc.id = nextConfigId++;
+        sc.config = config;
+        sc.name = name;
+        configs.put(sc.id, sc);
+        configIds.put(FitnessCache.canonicalKey(config), sc.id);
+        return sc.id;
+    }
+
+    @Override
+    public synchronized int exists(int idExperiment, ParameterConfiguration config) throws Exception {
+        Integer id = configIds.get(FitnessCache.canonicalKey(config));
+        return id == null ? 0 : id;
+    }
+
+    @Override
+    public synchronized ParameterConfiguration getParameterConfiguration(int idExperiment, int idSolverConfig) throws Exception {
+        SolverConfig sc = configs.get(idSolverConfig);
+        return sc == null ? null : sc.config;
+    }
+
+    @Override
+    public synchronized String getSolverConfigName(int idSolverConfig) throws Exception {
+        SolverConfig sc = configs.get(idSolverConfig);
+        return sc == null ? null : sc.name;
+    }
+
+    @Override
+    public synchronized void updateSolverConfigurationName(int idSolverConfig, String name) throws Exception {
+        configs.get(idSolverConfig).name = name;
+    }
+
+    @Override
+    public synchronized Float getSolverConfigurationCost(int idSolverConfig) throws Exception {
+        SolverConfig sc = configs.get(idSolverConfig);
+        return sc == null ? null : sc.cost;
+    }
+
+    @Override
+    public synchronized void updateSolverConfigurationCost(int idSolverConfig, float cost, CostFunction costFunction) throws Exception {
+        SolverConfig sc = configs.get(idSolverConfig);
+        sc.cost = cost;
+        sc.costFunction = costFunction.databaseRepresentation();
+    }
+
+    @Override
+    public synchronized List<Integer> getBestConfigurations(int idExperiment, CostFunction costFunction, int no) throws Exception {
+        List<SolverConfig> evaluated = new ArrayList<SolverConfig>();
+        for (SolverConfig sc: configs.values()) {
+            if (sc.cost != null && costFunction.databaseRepresentation().equals(sc.costFunction)) evaluated.add(sc);
+        }
+        Collections.sort(evaluated, new Comparator<SolverConfig>() {
+            @Override
+            public int compare(SolverConfig a, SolverConfig b) {
+                int c = a.cost.compareTo(b.cost);
+                return c != 0 ? c : a.id - b.id;
+            }
+        });
+        List<Integer> best = new ArrayList<Integer>();
+        for (int i = 0; i < Math.min(no, evaluated.size()); i++) best.add(evaluated.get(i).id);
+        return best;
+    }
+
+    /**
+     * Launches the next runs of the course.
+     */
+    @Override
+    public synchronized List<Integer> launchJob(int idExperiment, int idSolverConfig, int[] cpuTimeLimit, int numberOfJobs, Random rng) throws Exception {
+        simulate();
+        SolverConfig sc = configs.get(idSolverConfig);
+        int courseLength = getCourseLength(idExperiment);
+        List<Integer> ids = new ArrayList<Integer>();
+        for (int i = 0; i < numberOfJobs; i++) ids.add(launch(sc, sc.numRuns, courseLength, cpuTimeLimit[i]));
+        simulate();
+        return ids;
+    }
+
+    @Override
+    public synchronized List<Integer> launchCourseJobs(int idExperiment, int idSolverConfig, int[] cpuTimeLimit, int[] courseIndices) throws Exception {
+        simulate();
+        SolverConfig sc = configs.get(idSolverConfig);
+        int courseLength = getCourseLength(idExperiment);
+        List<Integer> ids = new ArrayList<Integer>();
+        for (int i = 0; i < courseIndices.length; i++) {
+            Iterator<Job> it = jobs.values().iterator();
+            while (it.hasNext()) {
+                Job job = it.next();
+                if (job.idSolverConfig != idSolverConfig || job.courseIndex != courseIndices[i]) continue;
+                waiting.remove(job);
+                running.remove(job);
+                it.remove();
+            }
+            ids.add(launch(sc, courseIndices[i], courseLength, cpuTimeLimit[i]));
+        }
+        simulate();
+        return ids;
+    }
+
+    /**
+     * Queues a job of the solver configuration on the given course entry.
+     * @return ID of the job
+     */
+    private int launch(SolverConfig sc, int courseIndex, int courseLength, int cpuTimeLimit) {
+        Job job = new Job();
+        job.id = nextJobId++;
+        job.idSolverConfig = sc.id;
+        job.courseIndex = courseIndex;
+        int[] entry = getCourseEntry(courseIndex % courseLength);
+        job.instance = entry[0];
+        job.seed = entry[1];
+        job.cpuTimeLimit = cpuTimeLimit;
+        sc.numRuns = Math.max(sc.numRuns, courseIndex + 1);
+        jobs.put(job.id, job);
+        waiting.add(job);
+        return job.id;
+    }
+
+    @Override
+    public synchronized void launchBatch(int idExperiment, LaunchBatch batch, Random rng) throws Exception {
+        batch.launchEach(this, idExperiment, rng);
+    }
+
+    @Override
+    public synchronized Map<Integer, ExperimentResult> getJobsByIDs(List<Integer> ids) throws Exception {
+        simulate();
+        Map<Integer, ExperimentResult> results = new HashMap<Integer, ExperimentResult>();
+        for (Integer id: ids) {
+            Job job = jobs.get(id);
+            if (job != null) results.put(job.id, job.toResult());
+        }
+        return results;
+    }
+
+    @Override
+    public synchronized List<ExperimentResult> getRuns(int idExperiment, int idSolverConfig) throws Exception {
+        simulate();
+        List<Job> list = new ArrayList<Job>();
+        for (Job job: jobs.values()) {
+            if (job.idSolverConfig == idSolverConfig) list.add(job);
+        }
+        Collections.sort(list, new Comparator<Job>() {
+            @Override
+            public int compare(Job a, Job b) {
+                return a.courseIndex - b.courseIndex;
+            }
+        });
+        List<ExperimentResult> results = new ArrayList<ExperimentResult>();
+        for (Job job: list) results.add(job.toResult());
+        return results;
+    }
+
+    @Override
+    public synchronized List<ExperimentResult> getCourseRuns(int idExperiment, int idSolverConfig, int length) throws Exception {
+        simulate();
+        Job[] list = new Job[length];
+        for (Job job: jobs.values()) {
+            if (job.idSolverConfig == idSolverConfig && job.courseIndex < length) list[job.courseIndex] = job;
+        }
+        List<ExperimentResult> results = new ArrayList<ExperimentResult>();
+        for (Job job: list) results.add(job == null ? null : job.toResult());
+        return results;
+    }
+
+    @Override
+    public synchronized ExperimentResult killJob(int idJob) throws Exception {
+        simulate();
+        Job job = jobs.get(idJob);
+        if (job == null) return null;
+        if (job.status.equals(StatusCode.NOT_STARTED)) {
+            waiting.remove(job);
+            job.status = LocalExperimentResult.KILLED;
+        } else if (job.status.equals(StatusCode.RUNNING)) {
+            running.remove(job);
+            job.status = LocalExperimentResult.KILLED;
+            job.resultTime = (clock.currentTimeMillis() - job.startTime) / 1000.0f;
+            simulate();
+        }
+        return job.toResult();
+    }
+
+    @Override
+    public synchronized void setJobPriorities(Map<Integer, Integer> priorities) throws Exception {
+        for (Map.Entry<Integer, Integer> e: priorities.entrySet()) {
+            Job job = jobs.get(e.getKey());
+            if (job == null) continue;
+            // the queue doesn't notice priority changes, waiting jobs are queued again
+            if (waiting.remove(job)) {
+                job.priority = e.getValue();
+                waiting.add(job);
+            } else {
+                job.priority = e.getValue();
+            }
+        }
+    }
+
+    @Override
+    public int getComputationCoreCount(int idExperiment) throws Exception {
+        return cores;
+    }
+
+    @Override
+    public synchronized int getComputationJobCount(int idExperiment) throws Exception {
+        simulate();
+        return waiting.size() + running.size();
+    }
+
+    @Override
+    public void disconnect() {
+    }
+}